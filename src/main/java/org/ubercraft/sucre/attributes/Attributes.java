@@ -7,19 +7,30 @@ import static org.ubercraft.sucre.coercer.CoercerUtil.coerceToString;
 import static org.ubercraft.sucre.common.AssertUtil.notNull;
 import static org.ubercraft.sucre.common.ObjectUtil.unwrap;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.ubercraft.sucre.coercer.Coercer;
+import org.ubercraft.sucre.common.ExceptionUtil;
 import org.ubercraft.sucre.common.ObjectUtil;
-import org.ubercraft.sucre.common.ReflectionUtil;
 import org.ubercraft.sucre.reflect.Accessor;
 import org.ubercraft.sucre.reflect.MethodReflector;
 import org.ubercraft.sucre.reflect.Mutator;
@@ -36,14 +47,84 @@ public final class Attributes implements Serializable {
         return backedBy(values, null);
     }
 
+    @SuppressWarnings("unchecked")
     public static Attributes backedBy(Map<? extends Object, ? extends Object> values, Attributes defaults) {
-        return new Attributes(notNull(values), defaults, true);
+        return new Attributes((Map<Object, Object>)notNull(values), defaults, true);
+    }
+
+    /**
+     * Creates empty attributes that are safe to share between threads, including through proxies. Reads take no lock,
+     * and single writes lock only a stripe of the keys, so they run concurrently. Compound writes (<code>addAll</code>,
+     * <code>clear</code> and a committed {@link #batch()}) are atomic with respect to other writes, though a concurrent
+     * read may see part of one; see {@link #copyOnWrite()} for reads of a consistent snapshot. Null keys and values are
+     * allowed, as for other attributes.
+     */
+    public static Attributes concurrent() {
+        return concurrent(null);
+    }
+
+    public static Attributes concurrent(Attributes defaults) {
+        return new Attributes(new ConcurrentValues(), defaults, false);
+    }
+
+    /**
+     * Creates empty attributes whose values are an immutable snapshot, replaced by each write, for configuration that
+     * is reloaded while being read. Reads take no lock, and a {@link #batch()} of changes is published atomically.
+     * {@link #freeze()} returns the current snapshot without copying it, for a consistent view across several reads.
+     */
+    public static Attributes copyOnWrite() {
+        return copyOnWrite(null);
+    }
+
+    public static Attributes copyOnWrite(Attributes defaults) {
+        return new Attributes(new CopyOnWriteValues(), defaults, false);
+    }
+
+    /**
+     * Creates read-only attributes from a <code>.properties</code> file, memory-mapped rather than loaded: only an
+     * index of key offsets is built up front, and values are decoded when first read. For very large files; the file
+     * must be under 2GB, and must not be modified while in use. Layer writable attributes over them for overrides.
+     */
+    public static Attributes mapped(Path file) throws IOException {
+        return mapped(file, null);
+    }
+
+    public static Attributes mapped(Path file, Attributes defaults) throws IOException {
+        return new Attributes(new MappedProperties(notNull(file, "file cannot be null")), defaults, false);
     }
 
     private final Map<Object, Object> values;
 
     private final Attributes defaults;
 
+    // returned by lookup when no layer has a key; never a value
+    static final Object MISSING = new Object();
+
+    // the depth of defaults chain from which lookups may go through a flattened view of it
+    private static final int FLATTEN_DEPTH = 3;
+
+    private static final AtomicLongFieldUpdater<Attributes> MOD_COUNT = AtomicLongFieldUpdater.newUpdater(Attributes.class, "modCount");
+
+    // counts modifications made through this class, so that proxies can memoize coerced values
+    private transient volatile long modCount;
+
+    // set once the values may be modified other than through this class, e.g. a backed map, after which proxies don't
+    // memoize
+    private transient volatile boolean untracked;
+
+    // whether lookups go through a flattened view of a deep defaults chain
+    private volatile boolean flattenDefaults;
+
+    // the defaults chain flattened into a single map, once looked up through
+    private transient volatile FlattenedDefaults flattenedDefaults;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Attributes, List> SUBSCRIPTIONS = AtomicReferenceFieldUpdater.newUpdater(Attributes.class,
+            List.class, "subscriptions");
+
+    // created by the first subscription
+    private transient volatile List<AttributesSubscription> subscriptions;
+
     public Attributes() {
         this(null, null);
     }
@@ -57,16 +138,53 @@ public final class Attributes implements Serializable {
     }
 
     public Attributes(Map<? extends Object, ? extends Object> values, Attributes defaults) {
-        this(values, defaults, false);
+        this((values != null) ? new HashMap<Object, Object>(values) : new HashMap<Object, Object>(), defaults, false);
     }
 
-    @SuppressWarnings("unchecked")
-    private Attributes(Map<? extends Object, ? extends Object> values, Attributes defaults, boolean backed) {
-        this.values = (Map<Object, Object>)((values != null) ? (backed ? values : new HashMap<Object, Object>(values)) : new HashMap<Object, Object>());
+    private Attributes(Map<Object, Object> values, Attributes defaults, boolean backed) {
+        this.values = values;
         this.defaults = defaults;
+        this.untracked = backed;
+    }
+
+    /**
+     * Returns an immutable snapshot of these attributes and their defaults, stored compactly for fast lookups. Any
+     * attempt to modify it throws an <code>UnsupportedOperationException</code>. Frozen attributes are returned as is.
+     */
+    public Attributes freeze() {
+        if (isFrozen()) {
+            return this;
+        }
+        FrozenValues frozen = (values instanceof CopyOnWriteValues) ? ((CopyOnWriteValues)values).snapshot() : new FrozenValues(values);
+        Attributes attributes = new Attributes(frozen, (defaults != null) ? defaults.freeze() : null, false);
+        attributes.flattenDefaults = flattenDefaults;
+        return attributes;
+    }
+
+    /**
+     * Whether these attributes and their defaults are frozen; see {@link #freeze()}.
+     */
+    public boolean isFrozen() {
+        for (Attributes attributes = this; attributes != null; attributes = attributes.defaults) {
+            if (!(attributes.values instanceof FrozenValues)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the current snapshot of copy-on-write attributes, read without marking the values as escaped
+    Map<Object, Object> getSnapshot() {
+        return ((CopyOnWriteValues)values).snapshot();
+    }
+
+    // the values, for reading only, so without marking them as escaped
+    Map<Object, Object> readValues() {
+        return values;
     }
 
     public Map<Object, Object> getValues() {
+        escaped();
         return values;
     }
 
@@ -74,7 +192,25 @@ public final class Attributes implements Serializable {
         return defaults;
     }
 
+    public boolean isFlattenDefaults() {
+        return flattenDefaults;
+    }
+
+    /**
+     * Sets whether lookups that fall through to a defaults chain at least three deep go through a single map holding
+     * the whole chain. The map is rebuilt, copying every layer, on the first lookup after any layer is modified, so this
+     * only pays off for a chain that is read far more often than it changes. Off by default.
+     */
+    public void setFlattenDefaults(boolean flattenDefaults) {
+        this.flattenDefaults = flattenDefaults;
+        if (!flattenDefaults) {
+            this.flattenedDefaults = null;
+        }
+    }
+
     public Set<Object> keySet() {
+        // the key set may support removal (though not that of frozen, mapped or copy-on-write values, a snapshot's)
+        escaped();
         return values.keySet();
     }
 
@@ -83,7 +219,7 @@ public final class Attributes implements Serializable {
     }
 
     public boolean hasKeyOrDefaultKey(Object key) {
-        return hasKey(key) || (defaults != null && defaults.hasKeyOrDefaultKey(key));
+        return lookup(key) != MISSING;
     }
 
     public Object get(Object key) {
@@ -91,7 +227,92 @@ public final class Attributes implements Serializable {
     }
 
     public Object get(Object key, Object def) {
-        return hasKey(key) ? values.get(key) : (defaults != null) ? defaults.get(key, def) : def;
+        Object value = lookup(key);
+        return (value != MISSING) ? value : def;
+    }
+
+    /**
+     * Looks up the given key in these attributes and then their defaults, with a single probe of each map, returning
+     * {@link #MISSING} if no layer has it.
+     */
+    Object lookup(Object key) {
+        Object value = values.getOrDefault(key, MISSING);
+        if (value != MISSING || defaults == null) {
+            return value;
+        }
+        Attributes next = defaults;
+        FlattenedDefaults flattened = flattenDefaults ? getFlattenedDefaults() : null;
+        if (flattened != null) {
+            value = flattened.values.getOrDefault(key, MISSING);
+            if (value != MISSING || flattened.rest == null) {
+                return value;
+            }
+            next = flattened.rest;
+        }
+        for (Attributes attributes = next; attributes != null; attributes = attributes.defaults) {
+            value = attributes.values.getOrDefault(key, MISSING);
+            if (value != MISSING) {
+                return value;
+            }
+        }
+        return MISSING;
+    }
+
+    // a deep defaults chain is flattened into a single map, rebuilt when looked up after any of its layers is modified
+    private FlattenedDefaults getFlattenedDefaults() {
+        int depth = 0;
+        for (Attributes attributes = defaults; attributes != null && depth < FLATTEN_DEPTH; attributes = attributes.defaults) {
+            depth++;
+        }
+        if (depth < FLATTEN_DEPTH) {
+            return null;
+        }
+        long version = defaults.getVersion();
+        if (version < 0L) {
+            return null;
+        }
+        FlattenedDefaults flattened = flattenedDefaults;
+        if (flattened == null || flattened.version != version) {
+            flattened = flatten(version);
+            flattenedDefaults = flattened;
+        }
+        return (flattened.values != null) ? flattened : null;
+    }
+
+    // the defaults as a single map, nearer layers taking precedence, down to the first mapped layer: decoding a whole
+    // mapped file would defeat the point of mapping it, so lookups go on through that layer and those below it
+    private FlattenedDefaults flatten(long version) {
+        List<Attributes> layers = new ArrayList<Attributes>();
+        Attributes rest = defaults;
+        while (rest != null && !(rest.values instanceof MappedProperties)) {
+            layers.add(rest);
+            rest = rest.defaults;
+        }
+        if (layers.isEmpty()) {
+            return new FlattenedDefaults(version, null, rest);
+        }
+        Map<Object, Object> flattened = new HashMap<Object, Object>();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            flattened.putAll(layers.get(i).values);
+        }
+        return new FlattenedDefaults(version, flattened, rest);
+    }
+
+    private static final class FlattenedDefaults {
+
+        private final long version;
+
+        // null if nothing could be flattened
+        private final Map<Object, Object> values;
+
+        // the first layer not flattened, if any
+        private final Attributes rest;
+
+        FlattenedDefaults(long version, Map<Object, Object> values, Attributes rest) {
+            this.version = version;
+            this.values = values;
+            this.rest = rest;
+        }
     }
 
     public String getString(Object key) {
@@ -132,23 +353,184 @@ public final class Attributes implements Serializable {
     }
 
     public Object set(Object key, Object value) {
-        return values.put(key, value);
+        Object previous;
+        try {
+            previous = values.put(key, value);
+        }
+        finally {
+            modified();
+        }
+        if (isSubscribed()) {
+            changed(Collections.singleton(key));
+        }
+        return previous;
     }
 
     public Object remove(Object key) {
-        return values.remove(key);
+        Object previous;
+        try {
+            previous = values.remove(key);
+        }
+        finally {
+            modified();
+        }
+        if (isSubscribed()) {
+            changed(Collections.singleton(key));
+        }
+        return previous;
     }
 
     public void addAll(Attributes attributes) {
-        this.values.putAll(attributes.values);
+        addAll(attributes.values);
     }
 
     public void addAll(Map<? extends Object, ? extends Object> values) {
-        this.values.putAll(values);
+        try {
+            this.values.putAll(values);
+        }
+        finally {
+            modified();
+        }
+        changed(values.keySet());
     }
 
     public void clear() {
-        values.clear();
+        Collection<Object> keys = isSubscribed() ? new ArrayList<Object>(values.keySet()) : null;
+        try {
+            values.clear();
+        }
+        finally {
+            modified();
+        }
+        changed(keys);
+    }
+
+    /**
+     * Starts a batch of changes, applied together when committed; see {@link AttributesBatch}.
+     */
+    public AttributesBatch batch() {
+        return new AttributesBatch(this);
+    }
+
+    void apply(boolean clear, Map<Object, Object> changes, Object removed) {
+        Collection<Object> keys = null;
+        if (isSubscribed()) {
+            keys = new LinkedHashSet<Object>();
+            if (clear) {
+                keys.addAll(values.keySet());
+            }
+            keys.addAll(changes.keySet());
+        }
+        try {
+            if (values instanceof CopyOnWriteValues) {
+                ((CopyOnWriteValues)values).apply(clear, changes, removed);
+            }
+            else if (values instanceof ConcurrentValues) {
+                ((ConcurrentValues)values).apply(clear, changes, removed);
+            }
+            else {
+                if (clear) {
+                    values.clear();
+                }
+                AttributesBatch.applyTo(values, changes, removed);
+            }
+        }
+        finally {
+            modified();
+        }
+        changed(keys);
+    }
+
+    /*
+     * Change subscriptions follow...
+     */
+
+    /**
+     * Subscribes to changes of any key, delivered on the common fork-join pool. Only changes made through these
+     * attributes (including their proxies) are seen; not those made directly to a backing map or to the defaults.
+     */
+    public AttributesSubscription subscribe(AttributesListener listener) {
+        return subscribe(ForkJoinPool.commonPool(), null, true, listener);
+    }
+
+    /**
+     * Subscribes to changes of the given key, delivered on the common fork-join pool.
+     */
+    public AttributesSubscription subscribe(Object key, AttributesListener listener) {
+        return subscribe(ForkJoinPool.commonPool(), key, false, listener);
+    }
+
+    /**
+     * Subscribes to changes of string keys with the given prefix, delivered on the common fork-join pool.
+     */
+    public AttributesSubscription subscribePrefix(String prefix, AttributesListener listener) {
+        return subscribe(ForkJoinPool.commonPool(), notNull(prefix, "prefix cannot be null"), true, listener);
+    }
+
+    /**
+     * Subscribes to changes of the given key, or of string keys with the given prefix (any key, if null), delivered on
+     * the given executor, e.g. one running virtual threads. See {@link AttributesSubscription}.
+     */
+    public AttributesSubscription subscribe(Executor executor, Object key, boolean prefix, AttributesListener listener) {
+        if (prefix && key != null && !(key instanceof String)) {
+            throw new IllegalArgumentException("prefix must be a string: " + key);
+        }
+        AttributesSubscription subscription = new AttributesSubscription(this, key, prefix, notNull(listener, "listener cannot be null"),
+                notNull(executor, "executor cannot be null"));
+        if (subscriptions == null) {
+            SUBSCRIPTIONS.compareAndSet(this, null, new CopyOnWriteArrayList<AttributesSubscription>());
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(AttributesSubscription subscription) {
+        List<AttributesSubscription> subscriptions = this.subscriptions;
+        if (subscriptions != null) {
+            subscriptions.remove(subscription);
+        }
+    }
+
+    private boolean isSubscribed() {
+        List<AttributesSubscription> subscriptions = this.subscriptions;
+        return (subscriptions != null && !subscriptions.isEmpty());
+    }
+
+    private void changed(Collection<?> keys) {
+        List<AttributesSubscription> subscriptions = this.subscriptions;
+        if (subscriptions != null && keys != null && !keys.isEmpty()) {
+            for (AttributesSubscription subscription : subscriptions) {
+                subscription.changed(keys);
+            }
+        }
+    }
+
+    // counted after the change, so that a value resolved during it is stamped with the older version
+    private void modified() {
+        MOD_COUNT.incrementAndGet(this);
+    }
+
+    private void escaped() {
+        // frozen and mapped values cannot be modified, escaped or not
+        if (!untracked && !(values instanceof FrozenValues) && !(values instanceof MappedProperties)) {
+            untracked = true;
+        }
+    }
+
+    /**
+     * Returns a version that changes whenever these attributes or their defaults are modified, or -1 if modifications
+     * cannot be tracked.
+     */
+    long getVersion() {
+        long version = 0L;
+        for (Attributes attributes = this; attributes != null; attributes = attributes.defaults) {
+            if (attributes.untracked) {
+                return -1L;
+            }
+            // each count only increases, so any modification increases the sum
+            version += attributes.modCount;
+        }
+        return version;
     }
 
     @Override
@@ -181,6 +563,90 @@ public final class Attributes implements Serializable {
         return "values: " + values + ((defaults != null) ? ", default " + defaults : "");
     }
 
+    /*
+     * Bean binding support follows...
+     */
+
+    /**
+     * Creates a new bean of the given type (which must have a no-arg constructor), and binds these attributes into it.
+     */
+    public <T> T bindTo(Class<T> type) {
+        return bindTo(null, null, type);
+    }
+
+    public <T> T bindTo(ProxyKeyFactory factory, Reflect reflect, Class<T> type) {
+        notNull(type, "type cannot be null");
+        T bean;
+        try {
+            bean = type.getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw ExceptionUtil.asUnchecked(e);
+        }
+        return bindInto(factory, reflect, bean);
+    }
+
+    /**
+     * Binds these attributes into the given bean, setting each property through its mutator. Properties are keyed,
+     * defaulted and coerced as for a proxy of the bean's type; properties with neither a value nor a default are left as
+     * they are.
+     */
+    public <T> T bindInto(T bean) {
+        return bindInto(null, null, bean);
+    }
+
+    public <T> T bindInto(ProxyKeyFactory factory, Reflect reflect, T bean) {
+        notNull(bean, "bean cannot be null");
+        BindingPlan plan = BindingPlan.forType(bean.getClass(), proxyKeyFactory(factory), reflect(reflect));
+        Mutator[] mutators = plan.mutators;
+        ProxyKey[] keys = plan.mutatorKeys;
+        for (int i = 0; i < mutators.length; i++) {
+            ProxyKey key = keys[i];
+            Object value = lookup(key);
+            if (value == MISSING) {
+                value = key.getDefault();
+                if (value == null) {
+                    continue;
+                }
+            }
+            Class<?> type = mutators[i].getType();
+            Object primitiveDefault = type.isPrimitive() ? ObjectUtil.getPrimitiveDefault(type) : null;
+            mutators[i].mutate(bean, coerceProxyValue(key, value, type, key.getCoercer(), primitiveDefault));
+        }
+        return bean;
+    }
+
+    /**
+     * Creates attributes from the given bean's properties, read through its accessors, and keyed as for a proxy of the
+     * bean's type.
+     */
+    public static Attributes fromBean(Object bean) {
+        return fromBean(null, null, bean);
+    }
+
+    public static Attributes fromBean(ProxyKeyFactory factory, Reflect reflect, Object bean) {
+        notNull(bean, "bean cannot be null");
+        BindingPlan plan = BindingPlan.forType(bean.getClass(), proxyKeyFactory(factory), reflect(reflect));
+        Accessor[] accessors = plan.accessors;
+        ProxyKey[] keys = plan.accessorKeys;
+        Attributes attributes = new Attributes();
+        for (int i = 0; i < accessors.length; i++) {
+            Object value = accessors[i].access(bean);
+            for (Object attributeKey : keys[i].getAttributeKeys()) {
+                attributes.set(attributeKey, value);
+            }
+        }
+        return attributes;
+    }
+
+    private static ProxyKeyFactory proxyKeyFactory(ProxyKeyFactory factory) {
+        return (factory != null) ? factory : DefaultProxyKeyFactory.DEFAULT_PROXY_KEY_FACTORY;
+    }
+
+    private static Reflect reflect(Reflect reflect) {
+        return (reflect != null) ? reflect : Reflect.METHODS;
+    }
+
     /*
      * Proxy support follows...
      */
@@ -197,32 +663,61 @@ public final class Attributes implements Serializable {
         return proxy(factory, null, api, apis);
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T proxy(ProxyKeyFactory factory, Reflect reflect, Class<T> api, Class<?>... apis) {
-        Class<?>[] interfaces = new Class[1 + ((apis != null) ? apis.length : 0)];
+        return proxy(ProxyEngine.JDK, factory, reflect, api, apis);
+    }
+
+    /**
+     * Creates a proxy using the given engine; see {@link ProxyEngine}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T proxy(ProxyEngine engine, ProxyKeyFactory factory, Reflect reflect, Class<T> api, Class<?>... apis) {
+        Class<?>[] interfaces = new Class<?>[1 + ((apis != null) ? apis.length : 0)];
         interfaces[0] = api;
         if (apis != null) {
             System.arraycopy(apis, 0, interfaces, 1, apis.length);
         }
-        return (T)proxy(factory, reflect, interfaces);
+        return (T)proxy(notNull(engine), proxyKeyFactory(factory), reflect(reflect), interfaces);
     }
 
-    private Object proxy(ProxyKeyFactory factory, Reflect reflect, Class<?>... apis) {
-        if (factory == null) {
-            factory = DefaultProxyKeyFactory.DEFAULT_PROXY_KEY_FACTORY;
+    private Object proxy(ProxyEngine engine, ProxyKeyFactory factory, Reflect reflect, Class<?>... apis) {
+        ProxyPlan plan = ProxyPlan.forInterfaces(apis, factory, reflect);
+        if (engine == ProxyEngine.GENERATED) {
+            Object proxy = plan.newGeneratedProxy(this);
+            if (proxy != null) {
+                return proxy;
+            }
         }
+        return plan.newJdkProxy(new AttributeProxyInvocationHandler(plan));
+    }
+
+    /**
+     * Drops the cached proxy and binding plans for the given type, e.g. after it has been reloaded, or its reflectors
+     * uncached. This includes the plans for proxies of several interfaces, any one of which is the given type.
+     */
+    public static void unCacheProxies(Class<?> type) {
+        notNull(type, "type cannot be null");
+        ProxyPlan.unCache(type);
+        BindingPlan.unCache(type);
+    }
+
+    /**
+     * Completely clears the cached proxy and binding plans.
+     */
+    public static void clearProxyCache() {
+        ProxyPlan.clearCache();
+        BindingPlan.clearCache();
+    }
+
+    static Map<Method, ProxyKey> createProxyKeyMappings(ProxyKeyFactory factory, Reflect reflect, Class<?>... apis) {
         Map<Method, ProxyKey> mappings = new HashMap<Method, ProxyKey>();
         for (Class<?> api : apis) {
             createProxyKeyMappings(factory, reflect, api, mappings);
         }
-        return Proxy.newProxyInstance(apis[0].getClassLoader(), apis, //
-                new AttributeProxyInvocationHandler(mappings));
+        return mappings;
     }
 
     private static void createProxyKeyMappings(ProxyKeyFactory factory, Reflect reflect, Class<?> api, Map<Method, ProxyKey> mappings) {
-        if (reflect == null) {
-            reflect = Reflect.METHODS;
-        }
         Reflector reflector = reflect.getReflector(api);
         for (Accessor accessor : reflector.getAccessors()) {
             Method accessorMethod = ((MethodReflector)accessor).getMethod();
@@ -246,99 +741,140 @@ public final class Attributes implements Serializable {
 
         private final Map<Method, ProxyKey> mappings;
 
-        AttributeProxyInvocationHandler(Map<Method, ProxyKey> mappings) {
-            this.mappings = Collections.unmodifiableMap(mappings);
+        private final Map<Method, ProxyDispatch> dispatches;
+
+        private final ProxyMemo[] memos;
+
+        AttributeProxyInvocationHandler(ProxyPlan plan) {
+            this.mappings = plan.mappings;
+            this.dispatches = plan.dispatches;
+            this.memos = new ProxyMemo[plan.memoCount];
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            ProxyKey key = mappings.get(method);
-            Class<?> type = method.getReturnType();
-            if (key != null) {
-                if (type == void.class) {
-                    setValue(args, key);
-                    return null;
-                }
-                else {
-                    return getValue(key, type);
-                }
+            ProxyDispatch dispatch = dispatches.get(method);
+            if (dispatch == null) {
+                // not one of the proxied interfaces' public methods
+                dispatch = ProxyDispatch.forMethod(method, mappings.get(method), -1);
             }
-            else if (Attributes.class.isAssignableFrom(type) && method.getParameterTypes().length == 0) {
+            switch (dispatch.kind) {
+            case GETTER:
+                return getProxyValue(dispatch, memos);
+            case SETTER:
+                setProxyValue(dispatch.key, args[0]);
+                return null;
+            case SELF:
                 return Attributes.this;
-            }
-            else if (ReflectionUtil.isHashCodeMethod(method)) {
+            case HASH_CODE:
                 return System.identityHashCode(proxy);
-            }
-            else if (ReflectionUtil.isEqualsMethod(method)) {
+            case EQUALS:
                 return (proxy == args[0]);
-            }
-            else if (ReflectionUtil.isToStringMethod(method)) {
+            case TO_STRING:
                 return toString();
-            }
-            else if (method.getReturnType().isPrimitive()) {
-                return ObjectUtil.getPrimitiveDefault(method.getReturnType());
-            }
-            else {
-                return null;
+            default:
+                return dispatch.primitiveDefault;
             }
         }
 
-        private Object getValue(ProxyKey key, Class<?> type) {
-            Object value = key.getDefault();
-            for (Object attributeKey : key.getAttributeKeys()) {
-                if (hasKeyOrDefaultKey(attributeKey)) {
-                    value = get(attributeKey, value);
-                    break;
-                }
-            }
-            if (value != null) {
-                value = key.getCoercer().coerce(value, type, key.isStrictCoerce());
-            }
-            if (value == null && type.isPrimitive()) {
-                value = ObjectUtil.getPrimitiveDefault(type);
-            }
-            return value;
+        @Override
+        public String toString() {
+            return proxyToString(mappings.values());
         }
 
-        private void setValue(Object[] args, ProxyKey key) {
-            Object value = args[0];
-            for (Object attributeKey : key.getAttributeKeys()) {
-                set(attributeKey, value);
-            }
+        private Attributes getAttributes() {
+            return Attributes.this;
         }
+    }
 
-        @Override
-        public String toString() {
-            StringBuilder b = new StringBuilder();
-            b.append("[");
-            for (ProxyKey key : mappings.values()) {
-                b.append(Arrays.asList(key.getAttributeKeys()));
-                b.append("=");
-                b.append(getValue(key, Object.class));
-                b.append(", ");
-            }
-            if (b.length() > 1) {
-                b.setLength(b.length() - 2);
+    // resolves a proxy key's value: from the first of its attribute keys that is present, else its default
+    Object getProxyValue(ProxyKey key, Class<?> type) {
+        return getProxyValue(key, type, key.getCoercer(), type.isPrimitive() ? ObjectUtil.getPrimitiveDefault(type) : null);
+    }
+
+    // as above for a getter's dispatch, memoized in its slot (if any) while the version is unchanged
+    Object getProxyValue(ProxyDispatch dispatch, ProxyMemo[] memos) {
+        int slot = dispatch.memoSlot;
+        long version = (slot >= 0) ? getVersion() : -1L;
+        if (version < 0L) {
+            return getProxyValue(dispatch.key, dispatch.type, dispatch.coercer, dispatch.primitiveDefault);
+        }
+        ProxyMemo memo = memos[slot];
+        if (memo != null && memo.version == version) {
+            return memo.value;
+        }
+        Object value = getProxyValue(dispatch.key, dispatch.type, dispatch.coercer, dispatch.primitiveDefault);
+        memos[slot] = new ProxyMemo(version, value);
+        return value;
+    }
+
+    Object getProxyValue(ProxyKey key, Class<?> type, Coercer coercer, Object primitiveDefault) {
+        Object value = lookup(key);
+        if (value == MISSING) {
+            value = key.getDefault();
+        }
+        return coerceProxyValue(key, value, type, coercer, primitiveDefault);
+    }
+
+    // the value of the first of a proxy key's attribute keys that is present, else MISSING
+    private Object lookup(ProxyKey key) {
+        for (Object attributeKey : key.getAttributeKeys()) {
+            Object value = lookup(attributeKey);
+            if (value != MISSING) {
+                return value;
             }
-            b.append("]");
-            return b.toString();
         }
+        return MISSING;
+    }
 
-        private Attributes getAttributes() {
-            return Attributes.this;
+    private static Object coerceProxyValue(ProxyKey key, Object value, Class<?> type, Coercer coercer, Object primitiveDefault) {
+        if (value != null) {
+            value = coercer.coerce(value, type, key.isStrictCoerce());
+        }
+        if (value == null) {
+            value = primitiveDefault;
+        }
+        return value;
+    }
+
+    void setProxyValue(ProxyKey key, Object value) {
+        for (Object attributeKey : key.getAttributeKeys()) {
+            set(attributeKey, value);
         }
     }
 
+    String proxyToString(Collection<ProxyKey> keys) {
+        StringBuilder b = new StringBuilder();
+        b.append("[");
+        for (ProxyKey key : keys) {
+            b.append(Arrays.asList(key.getAttributeKeys()));
+            b.append("=");
+            b.append(getProxyValue(key, Object.class));
+            b.append(", ");
+        }
+        if (b.length() > 1) {
+            b.setLength(b.length() - 2);
+        }
+        b.append("]");
+        return b.toString();
+    }
+
     private static AttributeProxyInvocationHandler getInvocationHandler(Object proxy) {
         return (AttributeProxyInvocationHandler)Proxy //
                 .getInvocationHandler(proxy);
     }
 
     public static Attributes getProxiedAttributes(Object proxy) {
+        if (proxy instanceof AttributesProxy) {
+            return ((AttributesProxy)proxy).proxyAttributes();
+        }
         return getInvocationHandler(proxy).getAttributes();
     }
 
     public static Collection<ProxyKey> getProxyKeys(Object proxy) {
+        if (proxy instanceof AttributesProxy) {
+            return ((AttributesProxy)proxy).proxyKeys();
+        }
         return getInvocationHandler(proxy).mappings.values();
     }
 }
@@ -0,0 +1,78 @@
+package org.ubercraft.sucre.attributes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects changes to {@link Attributes}, to be applied together by {@link #commit()}. For copy-on-write attributes
+ * (see {@link Attributes#copyOnWrite()}) the changes are published atomically, so readers see either none or all of
+ * them; otherwise they are applied one at a time. A batch is not thread-safe, and may be committed only once.
+ */
+public final class AttributesBatch {
+
+    // marks a removed key in the changes
+    private static final Object REMOVED = new Object();
+
+    private final Attributes attributes;
+
+    private final Map<Object, Object> changes = new LinkedHashMap<Object, Object>();
+
+    private boolean clear;
+
+    private boolean committed;
+
+    AttributesBatch(Attributes attributes) {
+        this.attributes = attributes;
+    }
+
+    public AttributesBatch set(Object key, Object value) {
+        changes.put(key, value);
+        return this;
+    }
+
+    public AttributesBatch remove(Object key) {
+        changes.put(key, REMOVED);
+        return this;
+    }
+
+    public AttributesBatch addAll(Attributes attributes) {
+        return addAll(attributes.readValues());
+    }
+
+    public AttributesBatch addAll(Map<? extends Object, ? extends Object> values) {
+        changes.putAll(values);
+        return this;
+    }
+
+    /**
+     * Removes all values, along with any changes already in this batch.
+     */
+    public AttributesBatch clear() {
+        changes.clear();
+        clear = true;
+        return this;
+    }
+
+    /**
+     * Applies the changes to the attributes.
+     */
+    public Attributes commit() {
+        if (committed) {
+            throw new IllegalStateException("batch already committed");
+        }
+        committed = true;
+        attributes.apply(clear, changes, REMOVED);
+        return attributes;
+    }
+
+    static void applyTo(Map<Object, Object> values, Map<Object, Object> changes, Object removed) {
+        for (Map.Entry<Object, Object> change : changes.entrySet()) {
+            if (change.getValue() == removed) {
+                values.remove(change.getKey());
+            }
+            else {
+                values.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.ubercraft.sucre.attributes;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The keys of {@link Attributes} that changed, as delivered to a listener. Changes made while an earlier notification
+ * was pending are coalesced into one; a listener reads the attributes for the current values.
+ */
+public final class AttributesChange {
+
+    private final Attributes attributes;
+
+    private final Set<Object> keys;
+
+    AttributesChange(Attributes attributes, Set<Object> keys) {
+        this.attributes = attributes;
+        this.keys = Collections.unmodifiableSet(keys);
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * The changed keys that the subscription matched, in the order first changed.
+     */
+    public Set<Object> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "changed: " + keys;
+    }
+}
@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.attributes;
+
+/**
+ * Listens for changes to subscribed keys of {@link Attributes}; see {@link Attributes#subscribe(AttributesListener)}.
+ */
+public interface AttributesListener {
+
+    void attributesChanged(AttributesChange change);
+}
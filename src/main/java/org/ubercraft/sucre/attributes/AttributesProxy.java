@@ -0,0 +1,64 @@
+package org.ubercraft.sucre.attributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class for generated attributes proxies. Each generated getter and setter passes its own constant index into the
+ * proxy's dispatches, resolved once per generated class, so a call is a direct method call with no method lookup, and
+ * no per call resolution of the key's coercer or the getter's primitive default.
+ * <p>
+ * This class is public only so that generated classes, which live in their own class loaders, can extend it.
+ */
+public abstract class AttributesProxy {
+
+    private final Attributes attributes;
+
+    // shared by all instances of the generated class
+    private final ProxyDispatch[] dispatches;
+
+    private final ProxyMemo[] memos;
+
+    protected AttributesProxy(Attributes attributes, ProxyDispatch[] dispatches) {
+        this.attributes = attributes;
+        this.dispatches = dispatches;
+        this.memos = new ProxyMemo[dispatches.length];
+    }
+
+    protected final Attributes proxyAttributes() {
+        return attributes;
+    }
+
+    protected final Object proxyGet(int index) {
+        return attributes.getProxyValue(dispatches[index], memos);
+    }
+
+    protected final void proxySet(int index, Object value) {
+        attributes.setProxyValue(dispatches[index].key, value);
+    }
+
+    final Collection<ProxyKey> proxyKeys() {
+        List<ProxyKey> keys = new ArrayList<ProxyKey>(dispatches.length);
+        for (ProxyDispatch dispatch : dispatches) {
+            keys.add(dispatch.key);
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    @Override
+    public final int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        return (this == o);
+    }
+
+    @Override
+    public final String toString() {
+        return attributes.proxyToString(proxyKeys());
+    }
+}
@@ -0,0 +1,134 @@
+package org.ubercraft.sucre.attributes;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ubercraft.sucre.common.ObjectUtil;
+
+/**
+ * A listener's subscription to changes of a key, or keys with a given prefix, of {@link Attributes}.
+ * <p>
+ * Writers only queue the changed keys; the listener is called on the subscription's executor, never on the writer's
+ * thread. Calls to one listener are serial: while one is running or pending, further changes are queued and then
+ * delivered together in a single call. Exceptions thrown by the listener go to the thread's uncaught exception handler.
+ */
+public final class AttributesSubscription {
+
+    private final Attributes attributes;
+
+    // the key, or prefix; null and a prefix for all keys
+    private final Object key;
+
+    private final boolean prefix;
+
+    private final AttributesListener listener;
+
+    private final Executor executor;
+
+    private final Queue<Set<Object>> pending = new ConcurrentLinkedQueue<Set<Object>>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+
+    private final Runnable delivery = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    AttributesSubscription(Attributes attributes, Object key, boolean prefix, AttributesListener listener, Executor executor) {
+        this.attributes = attributes;
+        this.key = key;
+        this.prefix = prefix;
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Stops delivery of changes, including any still pending.
+     */
+    public void cancel() {
+        cancelled = true;
+        attributes.unsubscribe(this);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    boolean matches(Object changedKey) {
+        if (!prefix) {
+            return ObjectUtil.nullSafeEquals(key, changedKey);
+        }
+        return key == null || (changedKey instanceof String && ((String)changedKey).startsWith((String)key));
+    }
+
+    // called by writers, after the change
+    void changed(Collection<?> changedKeys) {
+        Set<Object> matched = null;
+        for (Object changedKey : changedKeys) {
+            if (matches(changedKey)) {
+                if (matched == null) {
+                    matched = new LinkedHashSet<Object>();
+                }
+                matched.add(changedKey);
+            }
+        }
+        if (matched != null && !cancelled) {
+            pending.add(matched);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(delivery);
+            }
+            catch (RejectedExecutionException e) {
+                pending.clear();
+                scheduled.set(false);
+                uncaught(e);
+            }
+        }
+    }
+
+    private void deliver() {
+        Set<Object> keys = new LinkedHashSet<Object>();
+        for (Set<Object> changedKeys = pending.poll(); changedKeys != null; changedKeys = pending.poll()) {
+            keys.addAll(changedKeys);
+        }
+        try {
+            if (!keys.isEmpty() && !cancelled) {
+                listener.attributesChanged(new AttributesChange(attributes, keys));
+            }
+        }
+        catch (RuntimeException e) {
+            uncaught(e);
+        }
+        finally {
+            scheduled.set(false);
+            // changes queued after the poll, but before the flag was cleared
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static void uncaught(Throwable t) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+}
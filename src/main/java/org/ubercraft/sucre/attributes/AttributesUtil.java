@@ -8,13 +8,24 @@ import org.ubercraft.sucre.coercer.CoercerUtil;
 import org.ubercraft.sucre.coercer.Coercer;
 import org.ubercraft.sucre.coercer.CoercerFactory;
 import org.ubercraft.sucre.coercer.DateCoercer;
-import org.ubercraft.sucre.common.ExceptionUtil;
+import org.ubercraft.sucre.common.ReflectionUtil;
 import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.AccessorMutator;
+import org.ubercraft.sucre.reflect.AnnotationIndex;
+import org.ubercraft.sucre.reflect.Mutator;
 
 public class AttributesUtil {
 
     public static final String attributeKeyFor(Accessor accessor) {
-        AttributeKey key = accessor.getAnnotation(AttributeKey.class);
+        return attributeKeyFor((AccessorMutator)accessor);
+    }
+
+    public static final String attributeKeyFor(Mutator mutator) {
+        return attributeKeyFor((AccessorMutator)mutator);
+    }
+
+    private static String attributeKeyFor(AccessorMutator accessor) {
+        AttributeKey key = accessor.getAnnotationIndex().get(AttributeKey.class);
         if (key != null) {
             return key.value();
         }
@@ -22,7 +33,19 @@ public class AttributesUtil {
     }
 
     public static Object defaultValueFor(Accessor accessor) {
-        AttributeDefaultString stringDefault = accessor.getAnnotation(AttributeDefaultString.class);
+        return defaultValueFor((AccessorMutator)accessor);
+    }
+
+    public static Object defaultValueFor(Mutator mutator) {
+        return defaultValueFor((AccessorMutator)mutator);
+    }
+
+    private static Object defaultValueFor(AccessorMutator accessor) {
+        AnnotationIndex annotations = accessor.getAnnotationIndex();
+        if (annotations.isEmpty()) {
+            return null;
+        }
+        AttributeDefaultString stringDefault = annotations.get(AttributeDefaultString.class);
         if (stringDefault != null) {
             if (accessor.getType() != String.class && accessor.getType() != File.class && accessor.getType() != Class.class //
                     && accessor.getType() != Date.class && !accessor.getType().isEnum()) {
@@ -30,35 +53,35 @@ public class AttributesUtil {
             }
             return stringDefault.value();
         }
-        AttributeDefaultBoolean booleanDefault = accessor.getAnnotation(AttributeDefaultBoolean.class);
+        AttributeDefaultBoolean booleanDefault = annotations.get(AttributeDefaultBoolean.class);
         if (booleanDefault != null) {
             if (accessor.getType() != Boolean.class && accessor.getType() != boolean.class) {
                 throw new IllegalArgumentException("default type mismatch for: " + accessor + " (expected boolean)");
             }
             return booleanDefault.value();
         }
-        AttributeDefaultInt intDefault = accessor.getAnnotation(AttributeDefaultInt.class);
+        AttributeDefaultInt intDefault = annotations.get(AttributeDefaultInt.class);
         if (intDefault != null) {
             if (accessor.getType() != Integer.class && accessor.getType() != int.class) {
                 throw new IllegalArgumentException("default type mismatch for: " + accessor + " (expected int)");
             }
             return intDefault.value();
         }
-        AttributeDefaultDouble doubleDefault = accessor.getAnnotation(AttributeDefaultDouble.class);
+        AttributeDefaultDouble doubleDefault = annotations.get(AttributeDefaultDouble.class);
         if (doubleDefault != null) {
             if (accessor.getType() != Double.class && accessor.getType() != double.class) {
                 throw new IllegalArgumentException("default type mismatch for: " + accessor + " (expected double)");
             }
             return doubleDefault.value();
         }
-        AttributeDefaultLong longDefault = accessor.getAnnotation(AttributeDefaultLong.class);
+        AttributeDefaultLong longDefault = annotations.get(AttributeDefaultLong.class);
         if (longDefault != null) {
             if (accessor.getType() != Long.class && accessor.getType() != long.class) {
                 throw new IllegalArgumentException("default type mismatch for: " + accessor + " (expected long)");
             }
             return longDefault.value();
         }
-        AttributeDefaultClass classDefault = accessor.getAnnotation(AttributeDefaultClass.class);
+        AttributeDefaultClass classDefault = annotations.get(AttributeDefaultClass.class);
         if (classDefault != null) {
             if (accessor.getType() != Class.class) {
                 throw new IllegalArgumentException("default type mismatch for: " + accessor + " (expected Class)");
@@ -69,25 +92,20 @@ public class AttributesUtil {
     }
 
     public static Coercer coercerFor(Accessor accessor) {
-        AttributeCoercer ac = accessor.getAnnotation(AttributeCoercer.class);
+        AnnotationIndex annotations = accessor.getAnnotationIndex();
+        AttributeCoercer ac = annotations.get(AttributeCoercer.class);
 
         if (ac != null) {
-            try {
-                Class<? extends CoercerFactory> factoryType = ac.value();
-                CoercerFactory factory = factoryType.newInstance();
-                return factory.createCoercer(accessor);
-            }
-            catch (Exception e) {
-                throw ExceptionUtil.asUnchecked(e);
-            }
+            CoercerFactory factory = ReflectionUtil.<CoercerFactory> newInstanceUnchecked(ac.value());
+            return factory.createCoercer(accessor);
         }
 
         // java.util.Date gets some built-in treatment
         if (accessor.getType() == Date.class) {
-            AttributeDateFormats adf = accessor.getAnnotation(AttributeDateFormats.class);
+            AttributeDateFormats adf = annotations.get(AttributeDateFormats.class);
             if (adf != null) {
                 TimeZone tz = null;
-                AttributeDateTimeZone adtz = accessor.getAnnotation(AttributeDateTimeZone.class);
+                AttributeDateTimeZone adtz = annotations.get(AttributeDateTimeZone.class);
                 if (adtz != null) {
                     String value = adtz.value();
                     if (!"DEFAULT".equals(value)) {
@@ -105,6 +123,10 @@ public class AttributesUtil {
     }
 
     public static boolean isCoerceStrictFor(Accessor accessor) {
-        return (accessor.getAnnotation(AttributeCoerceStrict.class) != null);
+        return accessor.getAnnotationIndex().contains(AttributeCoerceStrict.class);
+    }
+
+    public static boolean isCoerceStrictFor(Mutator mutator) {
+        return mutator.getAnnotationIndex().contains(AttributeCoerceStrict.class);
     }
 }
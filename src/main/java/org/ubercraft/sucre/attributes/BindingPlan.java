@@ -0,0 +1,83 @@
+package org.ubercraft.sucre.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.Mutator;
+import org.ubercraft.sucre.reflect.Reflect;
+import org.ubercraft.sucre.reflect.Reflector;
+
+/**
+ * Package-private, immutable plan for binding attributes to and from a bean type: each of the type's mutators and
+ * accessors, with its proxy key already created. Plans are cached per type, proxy key factory and reflect instance (see
+ * {@link PlanKey}).
+ */
+final class BindingPlan {
+
+    private static volatile ClassValue<Map<PlanKey, BindingPlan>> plans = newPlans();
+
+    private static ClassValue<Map<PlanKey, BindingPlan>> newPlans() {
+        return new ClassValue<Map<PlanKey, BindingPlan>>() {
+            @Override
+            protected Map<PlanKey, BindingPlan> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<PlanKey, BindingPlan>();
+            }
+        };
+    }
+
+    static BindingPlan forType(Class<?> type, ProxyKeyFactory factory, Reflect reflect) {
+        Map<PlanKey, BindingPlan> cached = plans.get(type);
+        PlanKey planKey = new PlanKey(null, factory, reflect);
+        BindingPlan plan = cached.get(planKey);
+        if (plan == null) {
+            // plans are immutable, so a racing duplicate is harmless
+            plan = new BindingPlan(reflect.getReflector(type), factory);
+            PlanKey.purge(cached);
+            cached.put(planKey, plan);
+        }
+        return plan;
+    }
+
+    static void unCache(Class<?> type) {
+        plans.remove(type);
+    }
+
+    static void clearCache() {
+        plans = newPlans();
+    }
+
+    final Mutator[] mutators;
+    final ProxyKey[] mutatorKeys;
+
+    final Accessor[] accessors;
+    final ProxyKey[] accessorKeys;
+
+    private BindingPlan(Reflector reflector, ProxyKeyFactory factory) {
+        List<Mutator> mutators = new ArrayList<Mutator>();
+        List<ProxyKey> mutatorKeys = new ArrayList<ProxyKey>();
+        List<Accessor> accessors = new ArrayList<Accessor>();
+        List<ProxyKey> accessorKeys = new ArrayList<ProxyKey>();
+        for (int slot = 0; slot < reflector.getSlotCount(); slot++) {
+            Accessor accessor = reflector.getAccessor(slot);
+            Mutator mutator = reflector.getMutator(slot);
+            // annotations are read from the accessor, if there is one
+            ProxyKey key = (accessor != null) ? factory.proxyKeyFor(accessor) : factory.proxyKeyFor(mutator);
+            if (key == null) continue;
+            if (accessor != null) {
+                accessors.add(accessor);
+                accessorKeys.add(key);
+            }
+            if (mutator != null) {
+                mutators.add(mutator);
+                mutatorKeys.add(key);
+            }
+        }
+        this.mutators = mutators.toArray(new Mutator[mutators.size()]);
+        this.mutatorKeys = mutatorKeys.toArray(new ProxyKey[mutatorKeys.size()]);
+        this.accessors = accessors.toArray(new Accessor[accessors.size()]);
+        this.accessorKeys = accessorKeys.toArray(new ProxyKey[accessorKeys.size()]);
+    }
+}
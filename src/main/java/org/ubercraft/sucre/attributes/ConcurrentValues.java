@@ -0,0 +1,234 @@
+package org.ubercraft.sucre.attributes;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Package-private, thread-safe values for {@link Attributes#concurrent()}: a concurrent hash map, masking null keys and
+ * values. Reads take no lock. Single writes lock only their key's stripe, so writes to keys in different stripes don't
+ * contend, while compound writes (<code>putAll</code>, <code>clear</code> and batches) lock every stripe, so that no
+ * other write interleaves with them. A concurrent read may still see part of a compound write.
+ */
+final class ConcurrentValues extends AbstractMap<Object, Object> implements Serializable {
+
+    private static final long serialVersionUID = -2301624571180424470L;
+
+    // stands in for null keys and values, which the concurrent map doesn't allow; an enum, so it survives serialization
+    private enum Null {
+        NULL
+    }
+
+    private static Object mask(Object o) {
+        return (o != null) ? o : Null.NULL;
+    }
+
+    private static Object unmask(Object o) {
+        return (o != Null.NULL) ? o : null;
+    }
+
+    private static final int STRIPES = 32;
+
+    private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+
+    // single writes lock their key's stripe, compound writes all of them (in order)
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    ConcurrentValues() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock stripe(Object maskedKey) {
+        int h = maskedKey.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private transient Set<Map.Entry<Object, Object>> entrySet;
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(mask(key));
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(mask(value));
+    }
+
+    @Override
+    public Object get(Object key) {
+        return unmask(map.get(mask(key)));
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = map.get(mask(key));
+        return (value != null) ? unmask(value) : defaultValue;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        Object maskedKey = mask(key);
+        ReentrantLock lock = stripe(maskedKey);
+        lock.lock();
+        try {
+            return unmask(map.put(maskedKey, mask(value)));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object maskedKey = mask(key);
+        ReentrantLock lock = stripe(maskedKey);
+        lock.lock();
+        try {
+            return unmask(map.remove(maskedKey));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends Object, ? extends Object> values) {
+        lockAll();
+        try {
+            for (Map.Entry<? extends Object, ? extends Object> entry : values.entrySet()) {
+                map.put(mask(entry.getKey()), mask(entry.getValue()));
+            }
+        }
+        finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            map.clear();
+        }
+        finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Applies a batch of changes atomically with respect to other writes. Removed keys are mapped to the given marker.
+     */
+    void apply(boolean clear, Map<Object, Object> changes, Object removed) {
+        lockAll();
+        try {
+            if (clear) {
+                map.clear();
+            }
+            for (Map.Entry<Object, Object> change : changes.entrySet()) {
+                if (change.getValue() == removed) {
+                    map.remove(mask(change.getKey()));
+                }
+                else {
+                    map.put(mask(change.getKey()), mask(change.getValue()));
+                }
+            }
+        }
+        finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        Set<Map.Entry<Object, Object>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    // a weakly consistent view, as for the concurrent map's own
+    private class EntrySet extends AbstractSet<Map.Entry<Object, Object>> {
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            final Iterator<Map.Entry<Object, Object>> iterator = map.entrySet().iterator();
+            return new Iterator<Map.Entry<Object, Object>>() {
+
+                private Object lastKey;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<Object, Object> next() {
+                    final Map.Entry<Object, Object> entry = iterator.next();
+                    lastKey = entry.getKey();
+                    return new SimpleEntry<Object, Object>(unmask(entry.getKey()), unmask(entry.getValue())) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        public Object setValue(Object value) {
+                            super.setValue(value);
+                            return ConcurrentValues.this.put(getKey(), value);
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    if (lastKey == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentValues.this.remove(unmask(lastKey));
+                    lastKey = null;
+                }
+            };
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentValues.this.clear();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.ubercraft.sucre.attributes;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Package-private values for {@link Attributes#copyOnWrite()}: an immutable snapshot, replaced as a whole by each write.
+ * Reads take no lock and see a single snapshot; writes are serialized, each copying the snapshot. A batch of changes
+ * (see {@link AttributesBatch}) is applied to one copy and published at once.
+ */
+final class CopyOnWriteValues extends AbstractMap<Object, Object> implements Serializable {
+
+    private static final long serialVersionUID = -4118800467325569135L;
+
+    // serialized as a plain map, and rebuilt when read (see FrozenValues)
+    private volatile FrozenValues snapshot = new FrozenValues(Collections.<Object, Object> emptyMap());
+
+    FrozenValues snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return snapshot.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        return snapshot.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        Map<Object, Object> copy = new HashMap<Object, Object>(snapshot);
+        Object previous = copy.put(key, value);
+        snapshot = new FrozenValues(copy);
+        return previous;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        if (!snapshot.containsKey(key)) {
+            return null;
+        }
+        Map<Object, Object> copy = new HashMap<Object, Object>(snapshot);
+        Object previous = copy.remove(key);
+        snapshot = new FrozenValues(copy);
+        return previous;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends Object, ? extends Object> values) {
+        Map<Object, Object> copy = new HashMap<Object, Object>(snapshot);
+        copy.putAll(values);
+        snapshot = new FrozenValues(copy);
+    }
+
+    @Override
+    public synchronized void clear() {
+        snapshot = new FrozenValues(Collections.<Object, Object> emptyMap());
+    }
+
+    /**
+     * Applies a batch of changes to a single copy, and publishes it. Removed keys are mapped to the given marker.
+     */
+    synchronized void apply(boolean clear, Map<Object, Object> changes, Object removed) {
+        Map<Object, Object> copy = clear ? new HashMap<Object, Object>() : new HashMap<Object, Object>(snapshot);
+        AttributesBatch.applyTo(copy, changes, removed);
+        snapshot = new FrozenValues(copy);
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        // the current snapshot's, so unmodifiable
+        return snapshot.entrySet();
+    }
+}
@@ -3,6 +3,7 @@ package org.ubercraft.sucre.attributes;
 import static org.ubercraft.sucre.attributes.AttributesUtil.attributeKeyFor;
 
 import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.Mutator;
 
 public class DefaultLowerCaseProxyKeyFactory extends DefaultProxyKeyFactory {
 
@@ -12,4 +13,9 @@ public class DefaultLowerCaseProxyKeyFactory extends DefaultProxyKeyFactory {
     protected Object getAttributeKeyFor(Accessor accessor) {
         return attributeKeyFor(accessor).toLowerCase();
     }
+
+    @Override
+    protected Object getAttributeKeyFor(Mutator mutator) {
+        return attributeKeyFor(mutator).toLowerCase();
+    }
 }
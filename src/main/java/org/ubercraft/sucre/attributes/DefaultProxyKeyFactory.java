@@ -7,6 +7,7 @@ import static org.ubercraft.sucre.attributes.AttributesUtil.isCoerceStrictFor;
 
 import org.ubercraft.sucre.coercer.Coercer;
 import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.Mutator;
 
 public class DefaultProxyKeyFactory implements ProxyKeyFactory {
 
@@ -17,6 +18,15 @@ public class DefaultProxyKeyFactory implements ProxyKeyFactory {
         return createProxyKey(accessor, null, null);
     }
 
+    /**
+     * Keys a lone mutator by its attribute key and default annotations, as for an accessor; coercers are only read from
+     * accessors.
+     */
+    @Override
+    public ProxyKey proxyKeyFor(Mutator mutator) {
+        return new ProxyKey(null, getAttributeKeyFor(mutator), getDefaultValueFor(mutator), getDefaultIsCoerceStrictFor(mutator));
+    }
+
     protected ProxyKey proxyKeyWithAttributeKeyFor(Accessor accessor, Object attributeKey) {
         return createProxyKey(accessor, attributeKey, false);
     }
@@ -37,10 +47,18 @@ public class DefaultProxyKeyFactory implements ProxyKeyFactory {
         return attributeKeyFor(accessor);
     }
 
+    protected Object getAttributeKeyFor(Mutator mutator) {
+        return attributeKeyFor(mutator);
+    }
+
     protected Object getDefaultValueFor(Accessor accessor) {
         return defaultValueFor(accessor);
     }
 
+    protected Object getDefaultValueFor(Mutator mutator) {
+        return defaultValueFor(mutator);
+    }
+
     protected Coercer getCoercerFor(Accessor accessor) {
         return coercerFor(accessor);
     }
@@ -48,4 +66,8 @@ public class DefaultProxyKeyFactory implements ProxyKeyFactory {
     protected boolean getDefaultIsCoerceStrictFor(Accessor accessor) {
         return isCoerceStrictFor(accessor);
     }
+
+    protected boolean getDefaultIsCoerceStrictFor(Mutator mutator) {
+        return isCoerceStrictFor(mutator);
+    }
 }
@@ -0,0 +1,208 @@
+package org.ubercraft.sucre.attributes;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Package-private, immutable values for {@link Attributes#freeze()}: keys and values in flat arrays, with open
+ * addressing (linear probing) at most half full, so there are no per-entry objects and a lookup is usually a single
+ * probe. Any modification throws an <code>UnsupportedOperationException</code>.
+ * <p>
+ * The table's slots depend on the keys' hash codes, which may differ in another JVM (e.g. identity hash codes), so it is
+ * serialized as a plain map and rebuilt when read.
+ */
+final class FrozenValues extends AbstractMap<Object, Object> implements Serializable {
+
+    private static final long serialVersionUID = 5385217340164389164L;
+
+    // stands in for a null key, as an empty slot is null
+    private enum Null {
+        NULL
+    }
+
+    private final Object[] keys;
+
+    private final Object[] values;
+
+    private final int size;
+
+    private final int hashCode;
+
+    private transient Set<Map.Entry<Object, Object>> entrySet;
+
+    FrozenValues(Map<Object, Object> source) {
+        // copied first, as the source may be modified concurrently
+        Object[] entries = source.entrySet().toArray();
+        int capacity = 2;
+        while (capacity < entries.length * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        int hashCode = 0;
+        for (Object o : entries) {
+            @SuppressWarnings("unchecked")
+            Map.Entry<Object, Object> entry = (Map.Entry<Object, Object>)o;
+            Object key = mask(entry.getKey());
+            int index = indexOf(key);
+            keys[index] = key;
+            values[index] = entry.getValue();
+            hashCode += entry.hashCode();
+        }
+        this.size = entries.length;
+        this.hashCode = hashCode;
+    }
+
+    private static Object mask(Object key) {
+        return (key != null) ? key : Null.NULL;
+    }
+
+    private static Object unmask(Object key) {
+        return (key != Null.NULL) ? key : null;
+    }
+
+    // the slot holding the given (masked) key, or else the empty slot where it would go
+    private int indexOf(Object key) {
+        int mask = keys.length - 1;
+        int h = key.hashCode();
+        int index = (h ^ (h >>> 16)) & mask;
+        while (true) {
+            Object candidate = keys[index];
+            if (candidate == null || candidate == key || candidate.equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys[indexOf(mask(key))] != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return values[indexOf(mask(key))];
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        int index = indexOf(mask(key));
+        return (keys[index] != null) ? values[index] : defaultValue;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw new UnsupportedOperationException("frozen");
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException("frozen");
+    }
+
+    @Override
+    public void putAll(Map<? extends Object, ? extends Object> m) {
+        throw new UnsupportedOperationException("frozen");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("frozen");
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        Set<Map.Entry<Object, Object>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(new HashMap<Object, Object>(this));
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("serialized form required");
+    }
+
+    private static class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = -2907372283711593453L;
+
+        private final HashMap<Object, Object> values;
+
+        SerializedForm(HashMap<Object, Object> values) {
+            this.values = values;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return new FrozenValues(values);
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<Object, Object>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            return new Iterator<Map.Entry<Object, Object>>() {
+
+                private int next = advance(0);
+
+                private int advance(int index) {
+                    while (index < keys.length && keys[index] == null) {
+                        index++;
+                    }
+                    return index;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < keys.length;
+                }
+
+                @Override
+                public Map.Entry<Object, Object> next() {
+                    if (next >= keys.length) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<Object, Object> entry = new SimpleImmutableEntry<Object, Object>(unmask(keys[next]), values[next]);
+                    next = advance(next + 1);
+                    return entry;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("frozen");
+                }
+            };
+        }
+    }
+}
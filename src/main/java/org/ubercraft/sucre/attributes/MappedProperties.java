@@ -0,0 +1,455 @@
+package org.ubercraft.sucre.attributes;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Package-private, immutable values for {@link Attributes#mapped(Path)}: a <code>.properties</code> file, memory-mapped
+ * and indexed by the offsets of its keys and values, as read by <code>Properties.load(InputStream)</code> (ISO-8859-1,
+ * with escapes and continuation lines).
+ * <p>
+ * Loading scans the file once, hashing each key without creating it; the index is a few ints per entry. Values are
+ * decoded when first read, and keys only when iterated. The file must be under 2GB, and must not be modified while
+ * mapped. Serializes as a plain map of the decoded values.
+ */
+final class MappedProperties extends AbstractMap<Object, Object> implements Serializable {
+
+    private static final long serialVersionUID = -5770960314463565802L;
+
+    private final transient ByteBuffer buffer;
+
+    // per entry, in file order: the raw offsets of its key, the end of its key, its value and the end of its line
+    private transient int[] keyStarts;
+    private transient int[] keyEnds;
+    private transient int[] valueStarts;
+    private transient int[] lineEnds;
+    private transient int[] hashes;
+
+    // open addressing over the entries, holding entry index + 1; a later duplicate key replaces the earlier entry
+    private transient int[] table;
+
+    private transient int size;
+
+    // values decoded so far, by entry; strings are immutable, so racing readers at worst decode a value twice
+    private transient String[] decoded;
+
+    private transient Set<Map.Entry<Object, Object>> entrySet;
+
+    MappedProperties(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("file too large to map: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, length);
+        }
+        finally {
+            // the mapping remains valid once the channel is closed
+            channel.close();
+        }
+        index();
+        this.decoded = new String[keyStarts.length];
+    }
+
+    private int raw(int pos) {
+        return buffer.get(pos) & 0xff;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isTerminator(int c) {
+        return c == '\r' || c == '\n';
+    }
+
+    private void index() {
+        int capacity = 16;
+        keyStarts = new int[capacity];
+        keyEnds = new int[capacity];
+        valueStarts = new int[capacity];
+        lineEnds = new int[capacity];
+        hashes = new int[capacity];
+        int count = 0;
+
+        int length = buffer.limit();
+        int pos = 0;
+        Decoder decoder = new Decoder();
+        while (pos < length) {
+            int c = raw(pos);
+            if (isWhitespace(c) || isTerminator(c)) {
+                pos++;
+                continue;
+            }
+            if (c == '#' || c == '!') {
+                while (pos < length && !isTerminator(raw(pos))) {
+                    pos++;
+                }
+                continue;
+            }
+            int start = pos;
+            int end = lineEnd(pos, length);
+
+            // the key runs to the first unescaped separator or whitespace
+            decoder.reset(start, end);
+            int keyEnd = end;
+            int valueStart = end;
+            int hash = 0;
+            while (true) {
+                int at = decoder.pos;
+                int k = decoder.next();
+                if (k < 0) {
+                    break;
+                }
+                if (!decoder.escaped && (k == '=' || k == ':')) {
+                    keyEnd = at;
+                    valueStart = skipWhitespace(decoder.pos, end);
+                    break;
+                }
+                if (!decoder.escaped && isWhitespace(k)) {
+                    keyEnd = at;
+                    valueStart = skipWhitespace(decoder.pos, end);
+                    if (valueStart < end && (raw(valueStart) == '=' || raw(valueStart) == ':')) {
+                        valueStart = skipWhitespace(valueStart + 1, end);
+                    }
+                    break;
+                }
+                hash = 31 * hash + k;
+            }
+
+            if (count == keyStarts.length) {
+                capacity = count * 2;
+                keyStarts = Arrays.copyOf(keyStarts, capacity);
+                keyEnds = Arrays.copyOf(keyEnds, capacity);
+                valueStarts = Arrays.copyOf(valueStarts, capacity);
+                lineEnds = Arrays.copyOf(lineEnds, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+            }
+            keyStarts[count] = start;
+            keyEnds[count] = keyEnd;
+            valueStarts[count] = valueStart;
+            lineEnds[count] = end;
+            hashes[count] = hash;
+            count++;
+            pos = end;
+        }
+
+        int tableSize = 2;
+        while (tableSize < count * 2) {
+            tableSize <<= 1;
+        }
+        table = new int[tableSize];
+        for (int entry = 0; entry < count; entry++) {
+            int slot = slotOf(hashes[entry]);
+            while (table[slot] != 0 && !keysEqual(table[slot] - 1, entry)) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            if (table[slot] == 0) {
+                size++;
+            }
+            table[slot] = entry + 1;
+        }
+    }
+
+    // the end of the logical line starting at the given offset, following continuations
+    private int lineEnd(int pos, int length) {
+        int backslashes = 0;
+        while (pos < length) {
+            int c = raw(pos);
+            if (isTerminator(c)) {
+                if ((backslashes & 1) == 0) {
+                    return pos;
+                }
+                // continued on the next line
+                pos += (c == '\r' && pos + 1 < length && raw(pos + 1) == '\n') ? 2 : 1;
+                backslashes = 0;
+                continue;
+            }
+            backslashes = (c == '\\') ? backslashes + 1 : 0;
+            pos++;
+        }
+        return pos;
+    }
+
+    // skips whitespace and line continuations
+    private int skipWhitespace(int pos, int end) {
+        while (pos < end) {
+            int c = raw(pos);
+            if (isWhitespace(c)) {
+                pos++;
+            }
+            else if (c == '\\' && pos + 1 < end && isTerminator(raw(pos + 1))) {
+                pos = skipContinuation(pos + 1, end);
+            }
+            else {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    // skips a line terminator at the given offset, and the next line's leading whitespace
+    private int skipContinuation(int pos, int end) {
+        if (raw(pos) == '\r' && pos + 1 < end && raw(pos + 1) == '\n') {
+            pos++;
+        }
+        pos++;
+        while (pos < end && isWhitespace(raw(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int slotOf(int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private boolean keysEqual(int a, int b) {
+        if (hashes[a] != hashes[b]) {
+            return false;
+        }
+        Decoder da = new Decoder();
+        Decoder db = new Decoder();
+        da.reset(keyStarts[a], keyEnds[a]);
+        db.reset(keyStarts[b], keyEnds[b]);
+        while (true) {
+            int ca = da.next();
+            if (ca != db.next()) {
+                return false;
+            }
+            if (ca < 0) {
+                return true;
+            }
+        }
+    }
+
+    private boolean keyEquals(int entry, String key) {
+        Decoder decoder = new Decoder();
+        decoder.reset(keyStarts[entry], keyEnds[entry]);
+        for (int i = 0; i < key.length(); i++) {
+            if (decoder.next() != key.charAt(i)) {
+                return false;
+            }
+        }
+        return decoder.next() < 0;
+    }
+
+    // the entry for the given key, or -1
+    private int entryOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String k = (String)key;
+        int hash = k.hashCode();
+        int slot = slotOf(hash);
+        while (table[slot] != 0) {
+            int entry = table[slot] - 1;
+            if (hashes[entry] == hash && keyEquals(entry, k)) {
+                return entry;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    private String decode(int start, int end) {
+        StringBuilder b = new StringBuilder(end - start);
+        Decoder decoder = new Decoder();
+        decoder.reset(start, end);
+        for (int c = decoder.next(); c >= 0; c = decoder.next()) {
+            b.append((char)c);
+        }
+        return b.toString();
+    }
+
+    private String valueOf(int entry) {
+        String value = decoded[entry];
+        if (value == null) {
+            value = decode(valueStarts[entry], lineEnds[entry]);
+            decoded[entry] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entryOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int entry = entryOf(key);
+        return (entry >= 0) ? valueOf(entry) : null;
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        int entry = entryOf(key);
+        return (entry >= 0) ? valueOf(entry) : defaultValue;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw new UnsupportedOperationException("mapped properties are read-only");
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException("mapped properties are read-only");
+    }
+
+    @Override
+    public void putAll(Map<? extends Object, ? extends Object> m) {
+        throw new UnsupportedOperationException("mapped properties are read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("mapped properties are read-only");
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        Set<Map.Entry<Object, Object>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new HashMap<Object, Object>(this);
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<Object, Object>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            return new Iterator<Map.Entry<Object, Object>>() {
+
+                private int next = advance(0);
+
+                private int advance(int slot) {
+                    while (slot < table.length && table[slot] == 0) {
+                        slot++;
+                    }
+                    return slot;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < table.length;
+                }
+
+                @Override
+                public Map.Entry<Object, Object> next() {
+                    if (next >= table.length) {
+                        throw new NoSuchElementException();
+                    }
+                    int entry = table[next] - 1;
+                    next = advance(next + 1);
+                    return new SimpleImmutableEntry<Object, Object>(decode(keyStarts[entry], keyEnds[entry]), valueOf(entry));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("mapped properties are read-only");
+                }
+            };
+        }
+    }
+
+    // decodes the characters of a raw range, as Properties does: escapes, and continuation lines
+    private class Decoder {
+
+        int pos;
+
+        int end;
+
+        // whether the last character was escaped
+        boolean escaped;
+
+        void reset(int start, int end) {
+            this.pos = start;
+            this.end = end;
+            this.escaped = false;
+        }
+
+        // the next character, or -1 at the end
+        int next() {
+            while (pos < end) {
+                int c = raw(pos++);
+                if (c != '\\') {
+                    escaped = false;
+                    return c;
+                }
+                if (pos >= end) {
+                    // a trailing backslash is dropped
+                    break;
+                }
+                int e = raw(pos++);
+                if (isTerminator(e)) {
+                    pos = skipContinuation(pos - 1, end);
+                    continue;
+                }
+                escaped = true;
+                switch (e) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    return unicode();
+                default:
+                    return e;
+                }
+            }
+            escaped = false;
+            return -1;
+        }
+
+        private int unicode() {
+            if (pos + 4 > end) {
+                throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+            }
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(raw(pos++), 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+    }
+}
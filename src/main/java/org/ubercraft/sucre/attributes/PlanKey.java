@@ -0,0 +1,79 @@
+package org.ubercraft.sucre.attributes;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.ubercraft.sucre.reflect.Reflect;
+
+/**
+ * Package-private key of a cached proxy or binding plan: the interfaces, proxy key factory and reflect instance it was
+ * made for. The factory and reflect instance are held weakly, so that caching a plan doesn't pin them (or a reflect
+ * instance's reflectors); plans keyed by instances since collected are purged as other plans are cached. The built-in
+ * factories are stateless, so are keyed by class, to share plans between their instances.
+ */
+final class PlanKey {
+
+    private static final Class<?>[] NO_APIS = new Class<?>[0];
+
+    final Class<?>[] apis;
+
+    // the class of a built-in factory, or else a weak reference to the factory
+    private final Object factory;
+
+    private final WeakReference<Reflect> reflect;
+
+    private final int hashCode;
+
+    PlanKey(Class<?>[] apis, ProxyKeyFactory factory, Reflect reflect) {
+        this.apis = (apis != null) ? apis.clone() : NO_APIS;
+        this.factory = isStateless(factory) ? factory.getClass() : new WeakReference<ProxyKeyFactory>(factory);
+        this.reflect = new WeakReference<Reflect>(reflect);
+        this.hashCode = (Arrays.hashCode(this.apis) * 31 + System.identityHashCode(factory())) * 31 + System.identityHashCode(reflect);
+    }
+
+    private static boolean isStateless(ProxyKeyFactory factory) {
+        return factory != null && (factory.getClass() == DefaultProxyKeyFactory.class || factory.getClass() == DefaultLowerCaseProxyKeyFactory.class);
+    }
+
+    private Object factory() {
+        return (factory instanceof WeakReference) ? ((WeakReference<?>)factory).get() : factory;
+    }
+
+    private boolean isStale() {
+        return (factory instanceof WeakReference && factory() == null) || reflect.get() == null;
+    }
+
+    /**
+     * Removes the plans whose factory or reflect instance has been collected.
+     */
+    static void purge(Map<PlanKey, ?> plans) {
+        for (Iterator<PlanKey> iterator = plans.keySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().isStale()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    // a stale key equals only itself, which is enough to remove it
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof PlanKey)) {
+            return false;
+        }
+        PlanKey other = (PlanKey)o;
+        Object factory = factory();
+        Reflect reflect = this.reflect.get();
+        return (reflect != null && reflect == other.reflect.get() && (factory != null || !(this.factory instanceof WeakReference))
+                && factory == other.factory() && Arrays.equals(apis, other.apis));
+    }
+}
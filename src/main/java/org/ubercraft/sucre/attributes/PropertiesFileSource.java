@@ -0,0 +1,201 @@
+package org.ubercraft.sucre.attributes;
+
+import static org.ubercraft.sucre.common.AssertUtil.notNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attributes loaded from a <code>.properties</code> file, and reloaded when it changes.
+ * <p>
+ * The attributes are copy-on-write (see {@link Attributes#copyOnWrite()}), and a reload applies only the keys that
+ * were added, changed or removed, as a single atomic batch. So readers never see a partial reload, existing proxies
+ * see the new values without being recreated, and subscribers are notified of just the changed keys.
+ * <p>
+ * Once {@link #start() started}, a daemon thread watches the file's directory, reloading the file when it is modified
+ * or replaced, once no further change has been seen for a quiet period (100ms by default), so that a file that is
+ * still being written isn't read half way. If the file is deleted, the last values are kept. Reload failures, e.g. a
+ * malformed file, go to the thread's uncaught exception handler; the last values are kept, and watching continues.
+ */
+public class PropertiesFileSource implements Closeable {
+
+    private final Path file;
+
+    private final Attributes attributes;
+
+    private volatile WatchService watchService;
+
+    private volatile long quietMillis = 100L;
+
+    public PropertiesFileSource(Path file) throws IOException {
+        this(file, null);
+    }
+
+    public PropertiesFileSource(Path file, Attributes defaults) throws IOException {
+        this.file = notNull(file, "file cannot be null").toAbsolutePath();
+        this.attributes = Attributes.copyOnWrite(defaults);
+        reload();
+    }
+
+    /**
+     * Creates a source for the given file, and starts watching it.
+     */
+    public static PropertiesFileSource watch(Path file, Attributes defaults) throws IOException {
+        PropertiesFileSource source = new PropertiesFileSource(file, defaults);
+        source.start();
+        return source;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Sets how long the file must go unchanged before a watched change is reloaded.
+     */
+    public void setQuietPeriod(long quietPeriod, TimeUnit unit) {
+        if (quietPeriod < 0L) {
+            throw new IllegalArgumentException("quiet period cannot be negative: " + quietPeriod);
+        }
+        this.quietMillis = unit.toMillis(quietPeriod);
+    }
+
+    /**
+     * Rereads the file, applying any differences to the attributes in one batch, and returns the number of keys added,
+     * changed or removed.
+     */
+    public synchronized int reload() throws IOException {
+        Properties properties = new Properties();
+        InputStream in = Files.newInputStream(file);
+        try {
+            properties.load(in);
+        }
+        finally {
+            in.close();
+        }
+
+        AttributesBatch batch = attributes.batch();
+        int changes = 0;
+        Map<Object, Object> current = attributes.getSnapshot();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (!current.containsKey(key) || !value.equals(current.get(key))) {
+                batch.set(key, value);
+                changes++;
+            }
+        }
+        for (Object key : current.keySet()) {
+            if (!properties.containsKey(key)) {
+                batch.remove(key);
+                changes++;
+            }
+        }
+        if (changes > 0) {
+            batch.commit();
+        }
+        return changes;
+    }
+
+    /**
+     * Starts watching the file, if not already.
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        final WatchService watchService = file.getFileSystem().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchService = watchService;
+        Thread watcher = new Thread("sucre-properties-watcher: " + file) {
+            @Override
+            public void run() {
+                watch(watchService);
+            }
+        };
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(WatchService watchService) {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                if (!isChanged(watchService.take(), name)) {
+                    continue;
+                }
+                // one reload for however many events a save produced, once they stop coming
+                long quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                long deadline = System.nanoTime() + quietNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0L) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && isChanged(key, name)) {
+                        deadline = System.nanoTime() + quietNanos;
+                    }
+                }
+                if (Files.exists(file)) {
+                    try {
+                        reload();
+                    }
+                    catch (IOException e) {
+                        uncaughtException(e);
+                    }
+                    catch (RuntimeException e) {
+                        // e.g. a malformed escape
+                        uncaughtException(e);
+                    }
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            // closed, so stop
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // whether any of the key's events concern the file, resetting the key
+    private static boolean isChanged(WatchKey key, Path name) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private static void uncaughtException(Throwable th) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, th);
+    }
+
+    /**
+     * Stops watching the file. The attributes keep their last values.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        WatchService watchService = this.watchService;
+        if (watchService != null) {
+            this.watchService = null;
+            watchService.close();
+        }
+    }
+}
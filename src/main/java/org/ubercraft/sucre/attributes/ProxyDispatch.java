@@ -0,0 +1,66 @@
+package org.ubercraft.sucre.attributes;
+
+import java.lang.reflect.Method;
+
+import org.ubercraft.sucre.coercer.Coercer;
+import org.ubercraft.sucre.common.ObjectUtil;
+import org.ubercraft.sucre.common.ReflectionUtil;
+
+/**
+ * Package-private, immutable record of how a proxy handles a method, resolved once per proxy plan (or generated proxy
+ * class) so that each call is a single lookup and a switch, or an index for a generated proxy.
+ */
+final class ProxyDispatch {
+
+    enum Kind {
+        GETTER, SETTER, SELF, HASH_CODE, EQUALS, TO_STRING, DEFAULT
+    }
+
+    static ProxyDispatch forMethod(Method method, ProxyKey key, int memoSlot) {
+        Class<?> type = method.getReturnType();
+        Kind kind;
+        if (key != null) {
+            kind = (type == void.class) ? Kind.SETTER : Kind.GETTER;
+        }
+        else if (Attributes.class.isAssignableFrom(type) && method.getParameterTypes().length == 0) {
+            kind = Kind.SELF;
+        }
+        else if (ReflectionUtil.isHashCodeMethod(method)) {
+            kind = Kind.HASH_CODE;
+        }
+        else if (ReflectionUtil.isEqualsMethod(method)) {
+            kind = Kind.EQUALS;
+        }
+        else if (ReflectionUtil.isToStringMethod(method)) {
+            kind = Kind.TO_STRING;
+        }
+        else {
+            kind = Kind.DEFAULT;
+        }
+        return new ProxyDispatch(kind, key, type, (kind == Kind.GETTER) ? memoSlot : -1);
+    }
+
+    final Kind kind;
+
+    final ProxyKey key;
+
+    final Class<?> type;
+
+    // null for reference (and void) types
+    final Object primitiveDefault;
+
+    // null unless a getter
+    final Coercer coercer;
+
+    // the getter's slot in a proxy's memoized values, or -1 if not memoized
+    final int memoSlot;
+
+    private ProxyDispatch(Kind kind, ProxyKey key, Class<?> type, int memoSlot) {
+        this.kind = kind;
+        this.key = key;
+        this.type = type;
+        this.primitiveDefault = type.isPrimitive() ? ObjectUtil.getPrimitiveDefault(type) : null;
+        this.coercer = (kind == Kind.GETTER) ? key.getCoercer() : null;
+        this.memoSlot = memoSlot;
+    }
+}
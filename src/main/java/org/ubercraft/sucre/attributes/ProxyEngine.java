@@ -0,0 +1,19 @@
+package org.ubercraft.sucre.attributes;
+
+/**
+ * The ways in which {@link Attributes} can implement proxy interfaces.
+ */
+public enum ProxyEngine {
+
+    /**
+     * A <code>java.lang.reflect.Proxy</code>, dispatching every call through an invocation handler.
+     */
+    JDK,
+
+    /**
+     * A generated class per set of interfaces, with each method implemented directly (see {@link AttributesProxy}).
+     * Falls back to {@link #JDK} where generated code cannot link against the interfaces, e.g. when any of them is not
+     * public.
+     */
+    GENERATED
+}
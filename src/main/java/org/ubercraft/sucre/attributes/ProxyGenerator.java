@@ -0,0 +1,234 @@
+package org.ubercraft.sucre.attributes;
+
+import static org.ubercraft.sucre.common.ReflectionUtil.isEqualsMethod;
+import static org.ubercraft.sucre.common.ReflectionUtil.isHashCodeMethod;
+import static org.ubercraft.sucre.common.ReflectionUtil.isPubliclyAccessible;
+import static org.ubercraft.sucre.common.ReflectionUtil.isToStringMethod;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_FINAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_PUBLIC;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_SYNTHETIC;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACONST_NULL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.DCONST_0;
+import static org.ubercraft.sucre.internal.ClassFileWriter.FCONST_0;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKESPECIAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKEVIRTUAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.LCONST_0;
+import static org.ubercraft.sucre.internal.ClassFileWriter.internalName;
+import static org.ubercraft.sucre.internal.ClassFileWriter.methodDescriptor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ubercraft.sucre.internal.ClassFileWriter;
+import org.ubercraft.sucre.internal.ClassFileWriter.Code;
+
+/**
+ * Package-private generator of {@link AttributesProxy} classes, implementing a set of interfaces.
+ */
+final class ProxyGenerator {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String BASE_NAME = internalName(AttributesProxy.class);
+
+    // names of the base class's methods, which generated methods mustn't clash with
+    private static final Set<String> RESERVED_NAMES = new HashSet<String>();
+
+    static {
+        for (Method method : AttributesProxy.class.getDeclaredMethods()) {
+            RESERVED_NAMES.add(method.getName());
+        }
+    }
+
+    private ProxyGenerator() {}
+
+    /**
+     * A generated proxy class, with the dispatches its methods index into.
+     */
+    static final class ProxyClass {
+
+        private final Constructor<?> constructor;
+        private final ProxyDispatch[] dispatches;
+
+        ProxyClass(Constructor<?> constructor, ProxyDispatch[] dispatches) {
+            this.constructor = constructor;
+            this.dispatches = dispatches;
+        }
+
+        Object newInstance(Attributes attributes) {
+            try {
+                return constructor.newInstance(attributes, dispatches);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException("failed to create proxy: " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Generates a proxy class for the given interfaces and mappings, or returns null if generated code cannot link
+     * against them.
+     */
+    static ProxyClass generate(Class<?>[] apis, Map<Method, ProxyKey> mappings) {
+        ClassLoader loader = apis[0].getClassLoader();
+        for (Class<?> api : apis) {
+            if (!api.isInterface() || !isPubliclyAccessible(api) || !isVisible(api, loader)) {
+                return null;
+            }
+        }
+
+        // one index per distinct key, shared by its getter and setter, each resolved to its getter's dispatch
+        Map<ProxyKey, Integer> indexes = new IdentityHashMap<ProxyKey, Integer>();
+        List<ProxyDispatch> dispatches = new ArrayList<ProxyDispatch>();
+        for (Map.Entry<Method, ProxyKey> entry : mappings.entrySet()) {
+            Class<?> returnType = entry.getKey().getReturnType();
+            if (returnType != void.class) {
+                if (!isPubliclyAccessible(returnType) || (!returnType.isPrimitive() && !isVisible(returnType, loader))) {
+                    return null;
+                }
+                int index = dispatches.size();
+                indexes.put(entry.getValue(), index);
+                // memoized in the slot of the same index
+                dispatches.add(ProxyDispatch.forMethod(entry.getKey(), entry.getValue(), ProxyMemo.isMemoizable(returnType) ? index : -1));
+            }
+        }
+
+        String className = proxyClassName(apis[0]);
+        String[] interfaceNames = new String[apis.length];
+        for (int i = 0; i < apis.length; i++) {
+            interfaceNames[i] = internalName(apis[i]);
+        }
+        ClassFileWriter cw = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, className.replace('.', '/'), BASE_NAME, interfaceNames);
+
+        String initDescriptor = methodDescriptor(void.class, Attributes.class, ProxyDispatch[].class);
+        Code init = cw.addMethod(ACC_PUBLIC, "<init>", initDescriptor);
+        init.load('L', 0).load('L', 1).load('L', 2);
+        init.invoke(INVOKESPECIAL, BASE_NAME, "<init>", initDescriptor, false).returnValue('V');
+
+        Set<String> generated = new HashSet<String>();
+        for (Class<?> api : apis) {
+            for (Method method : api.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) continue;
+                // implemented by the base class
+                if (isEqualsMethod(method) || isHashCodeMethod(method) || isToStringMethod(method)) continue;
+                if (RESERVED_NAMES.contains(method.getName())) {
+                    return null;
+                }
+                String descriptor = methodDescriptor(method.getReturnType(), method.getParameterTypes());
+                if (!generated.add(method.getName() + descriptor)) continue;
+
+                Code code = cw.addMethod(ACC_PUBLIC, method.getName(), descriptor);
+                ProxyKey key = mappings.get(method);
+                Class<?> returnType = method.getReturnType();
+                if (key != null && returnType == void.class) {
+                    Integer index = indexes.get(key);
+                    if (index == null) {
+                        // a setter without a getter
+                        index = dispatches.size();
+                        indexes.put(key, index);
+                        dispatches.add(ProxyDispatch.forMethod(method, key, -1));
+                    }
+                    Class<?> parameterType = method.getParameterTypes()[0];
+                    code.load('L', 0).pushInt(index).load(parameterType, 1).box(parameterType);
+                    code.invoke(INVOKEVIRTUAL, BASE_NAME, "proxySet", methodDescriptor(void.class, int.class, Object.class), false);
+                    code.returnValue('V');
+                }
+                else if (key != null) {
+                    code.load('L', 0).pushInt(indexes.get(key));
+                    code.invoke(INVOKEVIRTUAL, BASE_NAME, "proxyGet", methodDescriptor(Object.class, int.class), false);
+                    code.unbox(returnType).returnValue(returnType);
+                }
+                else if (Attributes.class.isAssignableFrom(returnType) && method.getParameterTypes().length == 0) {
+                    code.load('L', 0).invoke(INVOKEVIRTUAL, BASE_NAME, "proxyAttributes", methodDescriptor(Attributes.class), false);
+                    code.returnValue('L');
+                }
+                else {
+                    returnDefault(code, returnType);
+                }
+            }
+        }
+
+        byte[] bytes = cw.toByteArray();
+        try {
+            Class<?> proxyClass = new ProxyClassLoader(loader).define(className, bytes);
+            Constructor<?> constructor = proxyClass.getConstructor(Attributes.class, ProxyDispatch[].class);
+            return new ProxyClass(constructor, dispatches.toArray(new ProxyDispatch[dispatches.size()]));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("failed to generate proxy class for: " + apis[0].getName(), e);
+        }
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader loader) {
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static String proxyClassName(Class<?> api) {
+        String name = api.getName() + "$$SucreProxy" + COUNTER.incrementAndGet();
+        // classes cannot be defined in the java.* packages
+        return name.startsWith("java.") ? "sucre." + name : name;
+    }
+
+    // as for a method the JDK proxy doesn't map: null, zero or false
+    private static void returnDefault(Code code, Class<?> type) {
+        if (type == void.class) {
+            code.returnValue('V');
+            return;
+        }
+        if (!type.isPrimitive()) {
+            code.insn(ACONST_NULL);
+        }
+        else if (type == long.class) {
+            code.insn(LCONST_0);
+        }
+        else if (type == float.class) {
+            code.insn(FCONST_0);
+        }
+        else if (type == double.class) {
+            code.insn(DCONST_0);
+        }
+        else {
+            code.pushInt(0);
+        }
+        code.returnValue(type);
+    }
+
+    // defines a single generated class, resolving the classes it links against in this library to this library's copies
+    private static class ProxyClassLoader extends ClassLoader {
+
+        ProxyClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(AttributesProxy.class.getName())) {
+                return AttributesProxy.class;
+            }
+            if (name.equals(Attributes.class.getName())) {
+                return Attributes.class;
+            }
+            if (name.equals(ProxyDispatch.class.getName())) {
+                return ProxyDispatch.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -1,8 +1,17 @@
 package org.ubercraft.sucre.attributes;
 
 import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.Mutator;
 
 public interface ProxyKeyFactory {
 
     ProxyKey proxyKeyFor(Accessor accessor);
+
+    /**
+     * Returns the proxy key for a mutator without an accessor, as bound into a bean with a write-only property, or null
+     * to skip it. By default, it is keyed by its name.
+     */
+    default ProxyKey proxyKeyFor(Mutator mutator) {
+        return new ProxyKey(null, mutator.getName());
+    }
 }
@@ -0,0 +1,26 @@
+package org.ubercraft.sucre.attributes;
+
+/**
+ * Package-private, immutable record of a proxy getter's coerced value, valid while its attributes' version is unchanged.
+ */
+final class ProxyMemo {
+
+    /**
+     * Whether values of the given type may be memoized: only immutable types, so that callers cannot see each other's
+     * changes to a shared value.
+     */
+    static boolean isMemoizable(Class<?> type) {
+        return type.isPrimitive() || type == String.class || type == Integer.class || type == Long.class || type == Double.class
+                || type == Boolean.class || type == Float.class || type == Short.class || type == Byte.class
+                || type == Character.class || type == Class.class || type.isEnum();
+    }
+
+    final long version;
+
+    final Object value;
+
+    ProxyMemo(long version, Object value) {
+        this.version = version;
+        this.value = value;
+    }
+}
@@ -0,0 +1,155 @@
+package org.ubercraft.sucre.attributes;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ubercraft.sucre.reflect.Reflect;
+
+/**
+ * Package-private, immutable plan for proxying a set of interfaces: the proxy key of each mapped method, and the proxy
+ * classes implementing the interfaces, both resolved once. Plans are cached per interfaces, proxy key factory and
+ * reflect instance (see {@link PlanKey}), under each of the interfaces, so that uncaching any one of them drops the
+ * plan. Lookups go through the first interface.
+ */
+final class ProxyPlan {
+
+    private static volatile ClassValue<Map<PlanKey, ProxyPlan>> plans = newPlans();
+
+    private static ClassValue<Map<PlanKey, ProxyPlan>> newPlans() {
+        return new ClassValue<Map<PlanKey, ProxyPlan>>() {
+            @Override
+            protected Map<PlanKey, ProxyPlan> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<PlanKey, ProxyPlan>();
+            }
+        };
+    }
+
+    static ProxyPlan forInterfaces(Class<?>[] apis, ProxyKeyFactory factory, Reflect reflect) {
+        Map<PlanKey, ProxyPlan> cached = plans.get(apis[0]);
+        PlanKey planKey = new PlanKey(apis, factory, reflect);
+        ProxyPlan plan = cached.get(planKey);
+        if (plan == null) {
+            // plans are immutable, so a racing duplicate is harmless
+            plan = new ProxyPlan(planKey.apis, Attributes.createProxyKeyMappings(factory, reflect, apis));
+            for (Class<?> api : planKey.apis) {
+                Map<PlanKey, ProxyPlan> apiPlans = plans.get(api);
+                PlanKey.purge(apiPlans);
+                apiPlans.put(planKey, plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Drops the plans for any interfaces including the given one.
+     */
+    static void unCache(Class<?> api) {
+        ClassValue<Map<PlanKey, ProxyPlan>> plans = ProxyPlan.plans;
+        for (PlanKey planKey : plans.get(api).keySet()) {
+            for (Class<?> other : planKey.apis) {
+                if (other != api) {
+                    plans.get(other).remove(planKey);
+                }
+            }
+        }
+        plans.remove(api);
+    }
+
+    static void clearCache() {
+        plans = newPlans();
+    }
+
+    // marks a proxy class that could not be resolved, so that it isn't tried again
+    private static final Object UNRESOLVABLE = new Object();
+
+    private final Class<?>[] apis;
+
+    final Map<Method, ProxyKey> mappings;
+
+    final Map<Method, ProxyDispatch> dispatches;
+
+    // the number of memoized getters
+    final int memoCount;
+
+    // the JDK proxy class's constructor, resolved by the first proxy created
+    private volatile Object jdkConstructor;
+
+    // the generated proxy class, resolved by the first proxy created
+    private volatile Object generatedClass;
+
+    private ProxyPlan(Class<?>[] apis, Map<Method, ProxyKey> mappings) {
+        this.apis = apis;
+        this.mappings = Collections.unmodifiableMap(mappings);
+        Map<Method, ProxyDispatch> dispatches = new HashMap<Method, ProxyDispatch>();
+        int memoCount = 0;
+        for (Class<?> api : apis) {
+            for (Method method : api.getMethods()) {
+                ProxyKey key = mappings.get(method);
+                boolean memoized = (key != null && method.getReturnType() != void.class && ProxyMemo.isMemoizable(method.getReturnType()));
+                dispatches.put(method, ProxyDispatch.forMethod(method, key, memoized ? memoCount++ : -1));
+            }
+        }
+        // JDK proxies pass Object's own methods for these, unless an interface redeclares them
+        for (Method method : Object.class.getMethods()) {
+            if (!dispatches.containsKey(method)) {
+                dispatches.put(method, ProxyDispatch.forMethod(method, null, -1));
+            }
+        }
+        this.dispatches = Collections.unmodifiableMap(dispatches);
+        this.memoCount = memoCount;
+    }
+
+    Object newJdkProxy(InvocationHandler handler) {
+        Object constructor = jdkConstructor;
+        if (constructor == null) {
+            Object proxy = Proxy.newProxyInstance(apis[0].getClassLoader(), apis, handler);
+            jdkConstructor = resolveJdkConstructor(proxy.getClass());
+            return proxy;
+        }
+        if (constructor != UNRESOLVABLE) {
+            try {
+                return ((Constructor<?>)constructor).newInstance(handler);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException("failed to create proxy: " + apis[0].getName(), e);
+            }
+        }
+        return Proxy.newProxyInstance(apis[0].getClassLoader(), apis, handler);
+    }
+
+    private static Object resolveJdkConstructor(Class<?> proxyClass) {
+        try {
+            Constructor<?> constructor = proxyClass.getConstructor(InvocationHandler.class);
+            constructor.setAccessible(true);
+            return constructor;
+        }
+        catch (Exception e) {
+            // e.g. a proxy class in a module that isn't open to us
+            return UNRESOLVABLE;
+        }
+    }
+
+    /**
+     * Returns a generated proxy, or null if generated code cannot implement the interfaces.
+     */
+    Object newGeneratedProxy(Attributes attributes) {
+        Object proxyClass = generatedClass;
+        if (proxyClass == null) {
+            synchronized (this) {
+                proxyClass = generatedClass;
+                if (proxyClass == null) {
+                    ProxyGenerator.ProxyClass generated = ProxyGenerator.generate(apis, mappings);
+                    proxyClass = (generated != null) ? generated : UNRESOLVABLE;
+                    generatedClass = proxyClass;
+                }
+            }
+        }
+        return (proxyClass != UNRESOLVABLE) ? ((ProxyGenerator.ProxyClass)proxyClass).newInstance(attributes) : null;
+    }
+}
@@ -349,4 +349,114 @@ public final class CoercerUtil {
         }
         return (T)value;
     }
+
+    /**
+     * Returns a coercer to the given type, with the conversion selected once, up front, rather than on every call as
+     * with {@link #coerceValue(Object, Class, boolean)} (which it otherwise behaves the same as). The returned coercer
+     * should only be passed the given type.
+     */
+    @SuppressWarnings({
+            "unchecked", "rawtypes"
+    })
+    public static Coercer coercerFor(final Class<?> type) {
+        if (type == String.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToString(value);
+                }
+            };
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToBoolean(value, strict);
+                }
+            };
+        }
+        if (type == Integer.class || type == int.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToInteger(value, strict);
+                }
+            };
+        }
+        if (type == Double.class || type == double.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToDouble(value, strict);
+                }
+            };
+        }
+        if (type == Long.class || type == long.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToLong(value, strict);
+                }
+            };
+        }
+        if (type == Byte.class || type == byte.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToByte(value, strict);
+                }
+            };
+        }
+        if (type == Short.class || type == short.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToShort(value, strict);
+                }
+            };
+        }
+        if (type.isEnum()) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToEnum((Class<? extends Enum>)type, value, strict);
+                }
+            };
+        }
+        if (type == BigInteger.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToBigInteger(value, strict, null);
+                }
+            };
+        }
+        if (type == BigDecimal.class) {
+            return new TypeCoercer() {
+                @Override
+                Object convert(Object value, Class<?> type, boolean strict) {
+                    return coerceToBigDecimal(value, strict, null);
+                }
+            };
+        }
+        // the rest are rare enough to leave to the general case
+        return DEFAULT_COERCER;
+    }
+
+    // passes values already of the type straight through, and converts the rest
+    private static abstract class TypeCoercer implements Coercer {
+
+        abstract Object convert(Object value, Class<?> type, boolean strict);
+
+        @Override
+        public final Object coerce(Object value, Class<?> type, boolean strict) {
+            if (value != null && !type.isAssignableFrom(value.getClass())) {
+                value = convert(value, type, strict);
+            }
+            if (value == null && type.isPrimitive()) {
+                value = ObjectUtil.getPrimitiveDefault(type);
+            }
+            return value;
+        }
+    }
 }
@@ -2,7 +2,22 @@ package org.ubercraft.sucre.common;
 
 import static org.ubercraft.sucre.common.ExceptionUtil.asUnchecked;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 public final class ReflectionUtil {
 
@@ -21,12 +36,126 @@ public final class ReflectionUtil {
         && method.getParameterTypes().length == 0);
     }
 
+    /**
+     * Checks whether the given type (or, for an array, its component type) is public, and in an exported package, so
+     * that code in any class loader or module can link against it.
+     */
+    public static boolean isPubliclyAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        return Modifier.isPublic(type.getModifiers()) && type.getModule().isExported(type.getPackageName());
+    }
+
     public static <T> T newInstanceUnchecked(Class<? extends T> type) {
         try {
-            return type.newInstance();
+            return type.getDeclaredConstructor().newInstance();
+        }
+        catch (InvocationTargetException e) {
+            // rethrow what the constructor threw, as Class.newInstance did
+            throw asUnchecked(e.getCause());
         }
         catch (Exception e) {
             throw asUnchecked(e);
         }
     }
+
+    /**
+     * Finds the classes in the given package (and optionally its sub-packages), in directories and jar files on the given
+     * class loader's path. Classes are loaded without being initialized; anonymous, local and synthetic classes, and
+     * classes that can't be loaded, are skipped.
+     */
+    public static List<Class<?>> findClasses(String packageName, ClassLoader loader, boolean recursive) throws IOException {
+        String path = packageName.replace('.', '/');
+        Set<String> classNames = new TreeSet<String>();
+        Enumeration<URL> urls = loader.getResources(path);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            if ("file".equals(url.getProtocol())) {
+                findClassNames(toFile(url), packageName, recursive, classNames);
+            }
+            else {
+                URLConnection connection = url.openConnection();
+                if (connection instanceof JarURLConnection) {
+                    JarURLConnection jarConnection = (JarURLConnection)connection;
+                    jarConnection.setUseCaches(false);
+                    JarFile jarFile = jarConnection.getJarFile();
+                    try {
+                        findClassNames(jarFile, path, recursive, classNames);
+                    }
+                    finally {
+                        jarFile.close();
+                    }
+                }
+            }
+        }
+
+        List<Class<?>> classes = new ArrayList<Class<?>>(classNames.size());
+        for (String className : classNames) {
+            try {
+                Class<?> clazz = Class.forName(className, false, loader);
+                if (!clazz.isAnonymousClass() && !clazz.isLocalClass() && !clazz.isSynthetic()) {
+                    classes.add(clazz);
+                }
+            }
+            catch (ClassNotFoundException e) {
+                // skip
+            }
+            catch (LinkageError e) {
+                // skip
+            }
+        }
+        return classes;
+    }
+
+    private static File toFile(URL url) throws IOException {
+        try {
+            return new File(url.toURI());
+        }
+        catch (URISyntaxException e) {
+            throw new IOException("invalid class path URL: " + url, e);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("invalid class path URL: " + url, e);
+        }
+    }
+
+    private static void findClassNames(File directory, String packageName, boolean recursive, Set<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                if (recursive) {
+                    findClassNames(file, packageName + "." + name, recursive, classNames);
+                }
+            }
+            else if (isClassFileName(name)) {
+                classNames.add(packageName + "." + name.substring(0, name.length() - 6));
+            }
+        }
+    }
+
+    private static void findClassNames(JarFile jarFile, String path, boolean recursive, Set<String> classNames) {
+        String prefix = path + "/";
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (!name.startsWith(prefix)) continue;
+            int slash = name.lastIndexOf('/');
+            if (!recursive && slash != prefix.length() - 1) continue;
+            if (isClassFileName(name.substring(slash + 1))) {
+                classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+            }
+        }
+    }
+
+    private static boolean isClassFileName(String name) {
+        return name.endsWith(".class") && !name.equals("module-info.class") && !name.equals("package-info.class");
+    }
 }
@@ -0,0 +1,693 @@
+package org.ubercraft.sucre.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ubercraft.sucre.common.ExceptionUtil;
+
+/**
+ * A minimal class file writer, for generating simple classes at runtime without depending on a bytecode library.
+ * <p>
+ * Classes are written with class file version 49, so no stack map frames are needed. Only the instructions needed by
+ * Sucre's own generators are supported; stack depth and local variable counts are tracked automatically.
+ * <p>
+ * Public only so that generators in other Sucre packages can use it; not part of Sucre's API, and may change at any
+ * time.
+ */
+public final class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+    public static final int ACC_SYNTHETIC = 0x1000;
+
+    // opcodes
+    public static final int ACONST_NULL = 0x01;
+    public static final int LCONST_0 = 0x09;
+    public static final int FCONST_0 = 0x0b;
+    public static final int DCONST_0 = 0x0e;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int ATHROW = 0xbf;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int GOTO = 0xa7;
+    public static final int IFNULL = 0xc6;
+    public static final int IFNONNULL = 0xc7;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int INVOKEINTERFACE = 0xb9;
+    public static final int NEW = 0xbb;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int CHECKCAST = 0xc0;
+    public static final int INSTANCEOF = 0xc1;
+
+    private static final int CLASS_FILE_VERSION = 49;
+
+    private final ConstantPool pool = new ConstantPool();
+
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    private final List<byte[]> fields = new ArrayList<byte[]>();
+    private final List<Code> methods = new ArrayList<Code>();
+
+    /**
+     * Create a new class writer. Names are internal names, e.g. <code>java/lang/Object</code>.
+     */
+    public ClassFileWriter(int access, String name, String superName, String... interfaceNames) {
+        this.access = access | ACC_SUPER;
+        this.thisClass = pool.classRef(name);
+        this.superClass = pool.classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            this.interfaces[i] = pool.classRef(interfaceNames[i]);
+        }
+    }
+
+    public void addField(int access, String name, String descriptor) {
+        ByteVector field = new ByteVector();
+        field.putShort(access);
+        field.putShort(pool.utf8(name));
+        field.putShort(pool.utf8(descriptor));
+        field.putShort(0);
+        fields.add(field.toByteArray());
+    }
+
+    /**
+     * Adds a method, returning a code writer for its body. Abstract and native methods are not supported.
+     */
+    public Code addMethod(int access, String name, String descriptor) {
+        Code code = new Code(access, name, descriptor);
+        methods.add(code);
+        return code;
+    }
+
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            pool.write(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i = 0; i < interfaces.length; i++) {
+                out.writeShort(interfaces[i]);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.write(out);
+            }
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw ExceptionUtil.asUnchecked(e);
+        }
+    }
+
+    /*
+     * Descriptor helpers follow...
+     */
+
+    public static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    public static String descriptor(Class<?> type) {
+        if (type.isPrimitive()) {
+            if (type == int.class) return "I";
+            if (type == long.class) return "J";
+            if (type == double.class) return "D";
+            if (type == float.class) return "F";
+            if (type == boolean.class) return "Z";
+            if (type == byte.class) return "B";
+            if (type == char.class) return "C";
+            if (type == short.class) return "S";
+            return "V";
+        }
+        if (type.isArray()) {
+            return internalName(type);
+        }
+        return "L" + internalName(type) + ";";
+    }
+
+    public static String methodDescriptor(Class<?> returnType, Class<?>... parameterTypes) {
+        StringBuilder b = new StringBuilder("(");
+        for (Class<?> parameterType : parameterTypes) {
+            b.append(descriptor(parameterType));
+        }
+        return b.append(")").append(descriptor(returnType)).toString();
+    }
+
+    public static Class<?> wrapperFor(Class<?> type) {
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        if (type == short.class) return Short.class;
+        return type;
+    }
+
+    // size in stack slots of a single descriptor type
+    private static int sizeOf(char sort) {
+        return (sort == 'J' || sort == 'D') ? 2 : (sort == 'V') ? 0 : 1;
+    }
+
+    private static int argumentsSize(String methodDescriptor) {
+        int size = 0;
+        int i = 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            char sort = methodDescriptor.charAt(i);
+            if (sort == '[' || sort == 'L') {
+                while (methodDescriptor.charAt(i) == '[') {
+                    i++;
+                }
+                i = (methodDescriptor.charAt(i) == 'L') ? methodDescriptor.indexOf(';', i) + 1 : i + 1;
+                size++;
+            }
+            else {
+                i++;
+                size += sizeOf(sort);
+            }
+        }
+        return size;
+    }
+
+    private static char returnSort(String methodDescriptor) {
+        char sort = methodDescriptor.charAt(methodDescriptor.indexOf(')') + 1);
+        return (sort == '[') ? 'L' : sort;
+    }
+
+    /**
+     * A jump target within a method body.
+     */
+    public static final class Label {
+
+        private int position = -1;
+        private int stackDepth = -1;
+        private final List<int[]> references = new ArrayList<int[]>();
+    }
+
+    /**
+     * Writes the body of a single method.
+     */
+    public final class Code {
+
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int codeAttribute;
+
+        private final ByteVector code = new ByteVector();
+
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = pool.utf8(name);
+            this.descriptor = pool.utf8(descriptor);
+            this.codeAttribute = pool.utf8("Code");
+            this.maxLocals = argumentsSize(descriptor) + (((access & ACC_STATIC) != 0) ? 0 : 1);
+        }
+
+        private void stack(int delta) {
+            stack += delta;
+            if (stack > maxStack) {
+                maxStack = stack;
+            }
+        }
+
+        private void local(int index, int size) {
+            if (index + size > maxLocals) {
+                maxLocals = index + size;
+            }
+        }
+
+        /**
+         * Emits a no-operand instruction: one of <code>ACONST_NULL</code>, <code>LCONST_0</code>, <code>FCONST_0</code>,
+         * <code>DCONST_0</code>, <code>POP</code>, <code>DUP</code> or <code>ATHROW</code>.
+         */
+        public Code insn(int opcode) {
+            code.putByte(opcode);
+            switch (opcode) {
+                case ACONST_NULL:
+                case FCONST_0:
+                case DUP:
+                    stack(1);
+                    break;
+                case LCONST_0:
+                case DCONST_0:
+                    stack(2);
+                    break;
+                case POP:
+                    stack(-1);
+                    break;
+                case ATHROW:
+                    stack = 0;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported opcode: " + opcode);
+            }
+            return this;
+        }
+
+        /**
+         * Loads a local variable of the given type (as a descriptor sort, e.g. <code>'I'</code> or <code>'L'</code>).
+         */
+        public Code load(char sort, int index) {
+            int base;
+            switch (sort) {
+                case 'J':
+                    base = 0x16;
+                    break;
+                case 'F':
+                    base = 0x17;
+                    break;
+                case 'D':
+                    base = 0x18;
+                    break;
+                case 'L':
+                case '[':
+                    base = 0x19;
+                    break;
+                default:
+                    base = 0x15;
+            }
+            code.putByte(base);
+            code.putByte(index);
+            local(index, sizeOf(sort));
+            stack(sizeOf(sort));
+            return this;
+        }
+
+        public Code load(Class<?> type, int index) {
+            return load(descriptor(type).charAt(0), index);
+        }
+
+        /**
+         * Returns from the method with a value of the given type (<code>'V'</code> for void).
+         */
+        public Code returnValue(char sort) {
+            switch (sort) {
+                case 'V':
+                    code.putByte(0xb1);
+                    break;
+                case 'J':
+                    code.putByte(0xad);
+                    break;
+                case 'F':
+                    code.putByte(0xae);
+                    break;
+                case 'D':
+                    code.putByte(0xaf);
+                    break;
+                case 'L':
+                case '[':
+                    code.putByte(0xb0);
+                    break;
+                default:
+                    code.putByte(0xac);
+            }
+            stack = 0;
+            return this;
+        }
+
+        public Code returnValue(Class<?> type) {
+            return returnValue(descriptor(type).charAt(0));
+        }
+
+        public Code pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                code.putByte(0x03 + value);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.putByte(0x10);
+                code.putByte(value);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.putByte(0x11);
+                code.putShort(value);
+            }
+            else {
+                ldc(pool.integer(value));
+                return this;
+            }
+            stack(1);
+            return this;
+        }
+
+        public Code pushString(String value) {
+            ldc(pool.string(value));
+            return this;
+        }
+
+        private void ldc(int index) {
+            code.putByte(0x13);
+            code.putShort(index);
+            stack(1);
+        }
+
+        /**
+         * Emits a type instruction: one of <code>NEW</code>, <code>ANEWARRAY</code>, <code>CHECKCAST</code> or
+         * <code>INSTANCEOF</code>.
+         */
+        public Code typeInsn(int opcode, String internalName) {
+            code.putByte(opcode);
+            code.putShort(pool.classRef(internalName));
+            if (opcode == NEW) {
+                stack(1);
+            }
+            return this;
+        }
+
+        /**
+         * Emits a field instruction: one of <code>GETFIELD</code>, <code>PUTFIELD</code>, <code>GETSTATIC</code> or
+         * <code>PUTSTATIC</code>.
+         */
+        public Code fieldInsn(int opcode, String owner, String name, String descriptor) {
+            code.putByte(opcode);
+            code.putShort(pool.memberRef(9, owner, name, descriptor));
+            int size = sizeOf(descriptor.charAt(0));
+            switch (opcode) {
+                case GETFIELD:
+                    stack(size - 1);
+                    break;
+                case PUTFIELD:
+                    stack(-size - 1);
+                    break;
+                case GETSTATIC:
+                    stack(size);
+                    break;
+                default:
+                    stack(-size);
+            }
+            return this;
+        }
+
+        /**
+         * Emits an invoke instruction: one of <code>INVOKEVIRTUAL</code>, <code>INVOKESPECIAL</code>,
+         * <code>INVOKESTATIC</code> or <code>INVOKEINTERFACE</code>.
+         */
+        public Code invoke(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            int argumentsSize = argumentsSize(descriptor);
+            code.putByte(opcode);
+            code.putShort(pool.memberRef(isInterface ? 11 : 10, owner, name, descriptor));
+            if (opcode == INVOKEINTERFACE) {
+                code.putByte(argumentsSize + 1);
+                code.putByte(0);
+            }
+            stack(-argumentsSize - ((opcode == INVOKESTATIC) ? 0 : 1) + sizeOf(returnSort(descriptor)));
+            return this;
+        }
+
+        /**
+         * Boxes the primitive value on top of the stack, if the given type is primitive.
+         */
+        public Code box(Class<?> type) {
+            if (type.isPrimitive() && type != void.class) {
+                Class<?> wrapper = wrapperFor(type);
+                invoke(INVOKESTATIC, internalName(wrapper), "valueOf", methodDescriptor(wrapper, type), false);
+            }
+            return this;
+        }
+
+        /**
+         * Casts the reference on top of the stack to the given type, unboxing it if the type is primitive.
+         */
+        public Code unbox(Class<?> type) {
+            if (type.isPrimitive()) {
+                Class<?> wrapper = wrapperFor(type);
+                typeInsn(CHECKCAST, internalName(wrapper));
+                invoke(INVOKEVIRTUAL, internalName(wrapper), type.getName() + "Value", methodDescriptor(type), false);
+            }
+            else if (type != Object.class) {
+                typeInsn(CHECKCAST, internalName(type));
+            }
+            return this;
+        }
+
+        /**
+         * Emits a jump instruction: one of <code>GOTO</code>, <code>IFEQ</code>, <code>IFNE</code>, <code>IFNULL</code>
+         * or <code>IFNONNULL</code>.
+         */
+        public Code jump(int opcode, Label label) {
+            int position = code.length();
+            code.putByte(opcode);
+            if (opcode != GOTO) {
+                stack(-1);
+            }
+            reference(label, position, 2);
+            if (opcode == GOTO) {
+                stack = 0;
+            }
+            return this;
+        }
+
+        /**
+         * Emits a table switch over the int on top of the stack, with cases from <code>low</code> upwards.
+         */
+        public Code tableSwitch(int low, Label defaultLabel, Label... labels) {
+            int position = code.length();
+            code.putByte(0xaa);
+            while (code.length() % 4 != 0) {
+                code.putByte(0);
+            }
+            stack(-1);
+            reference(defaultLabel, position, 4);
+            code.putInt(low);
+            code.putInt(low + labels.length - 1);
+            for (Label label : labels) {
+                reference(label, position, 4);
+            }
+            stack = 0;
+            return this;
+        }
+
+        private void reference(Label label, int position, int size) {
+            label.stackDepth = stack;
+            if (label.position >= 0) {
+                int offset = label.position - position;
+                if (size == 2) {
+                    code.putShort(offset);
+                }
+                else {
+                    code.putInt(offset);
+                }
+            }
+            else {
+                label.references.add(new int[] {
+                        position, code.length(), size
+                });
+                if (size == 2) {
+                    code.putShort(0);
+                }
+                else {
+                    code.putInt(0);
+                }
+            }
+        }
+
+        /**
+         * Marks the current position as the target of the given label.
+         */
+        public Code mark(Label label) {
+            label.position = code.length();
+            for (int[] reference : label.references) {
+                int offset = label.position - reference[0];
+                if (reference[2] == 2) {
+                    code.patchShort(reference[1], offset);
+                }
+                else {
+                    code.patchInt(reference[1], offset);
+                }
+            }
+            label.references.clear();
+            if (label.stackDepth >= 0) {
+                stack = label.stackDepth;
+            }
+            return this;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.length());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length());
+            out.write(code.data, 0, code.length());
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    // growable byte buffer that supports back-patching
+    private static final class ByteVector {
+
+        private byte[] data = new byte[64];
+        private int length;
+
+        int length() {
+            return length;
+        }
+
+        private void ensure(int size) {
+            if (length + size > data.length) {
+                byte[] newData = new byte[Math.max(data.length * 2, length + size)];
+                System.arraycopy(data, 0, newData, 0, length);
+                data = newData;
+            }
+        }
+
+        void putByte(int b) {
+            ensure(1);
+            data[length++] = (byte)b;
+        }
+
+        void putShort(int s) {
+            ensure(2);
+            patchShort(length, s);
+            length += 2;
+        }
+
+        void putInt(int i) {
+            ensure(4);
+            patchInt(length, i);
+            length += 4;
+        }
+
+        void patchShort(int position, int s) {
+            data[position] = (byte)(s >>> 8);
+            data[position + 1] = (byte)s;
+        }
+
+        void patchInt(int position, int i) {
+            data[position] = (byte)(i >>> 24);
+            data[position + 1] = (byte)(i >>> 16);
+            data[position + 2] = (byte)(i >>> 8);
+            data[position + 3] = (byte)i;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            System.arraycopy(data, 0, bytes, 0, length);
+            return bytes;
+        }
+    }
+
+    // constant pool, de-duplicating entries
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                try {
+                    out.writeByte(1);
+                    out.writeUTF(value);
+                }
+                catch (IOException e) {
+                    throw ExceptionUtil.asUnchecked(e);
+                }
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) {
+            return reference(7, utf8(internalName), -1);
+        }
+
+        int string(String value) {
+            return reference(8, utf8(value), -1);
+        }
+
+        int integer(int value) {
+            Integer index = entries.get("I" + value);
+            if (index == null) {
+                try {
+                    out.writeByte(3);
+                    out.writeInt(value);
+                }
+                catch (IOException e) {
+                    throw ExceptionUtil.asUnchecked(e);
+                }
+                index = add("I" + value);
+            }
+            return index;
+        }
+
+        int memberRef(int tag, String owner, String name, String descriptor) {
+            int nameAndType = reference(12, utf8(name), utf8(descriptor));
+            return reference(tag, classRef(owner), nameAndType);
+        }
+
+        private int reference(int tag, int first, int second) {
+            String key = tag + ":" + first + ":" + second;
+            Integer index = entries.get(key);
+            if (index == null) {
+                try {
+                    out.writeByte(tag);
+                    out.writeShort(first);
+                    if (second >= 0) {
+                        out.writeShort(second);
+                    }
+                }
+                catch (IOException e) {
+                    throw ExceptionUtil.asUnchecked(e);
+                }
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream classOut) throws IOException {
+            classOut.writeShort(count);
+            out.flush();
+            bytes.writeTo(classOut);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package org.ubercraft.sucre.mapper;
+
+import static org.ubercraft.sucre.common.AssertUtil.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.ubercraft.sucre.coercer.Coercer;
+import org.ubercraft.sucre.coercer.CoercerUtil;
+import org.ubercraft.sucre.reflect.Accessor;
+import org.ubercraft.sucre.reflect.BooleanAccessor;
+import org.ubercraft.sucre.reflect.BooleanMutator;
+import org.ubercraft.sucre.reflect.DoubleAccessor;
+import org.ubercraft.sucre.reflect.DoubleMutator;
+import org.ubercraft.sucre.reflect.IntAccessor;
+import org.ubercraft.sucre.reflect.IntMutator;
+import org.ubercraft.sucre.reflect.LongAccessor;
+import org.ubercraft.sucre.reflect.LongMutator;
+import org.ubercraft.sucre.reflect.Mutator;
+import org.ubercraft.sucre.reflect.Reflect;
+import org.ubercraft.sucre.reflect.Reflector;
+
+/**
+ * Copies properties from source beans to target beans, pairing each source accessor with a target mutator, either by
+ * name or by an explicit mapping. The pairs are resolved once, into a copy plan: each step has its coercion (if any)
+ * already chosen, and primitive properties of the same type are copied without boxing. Copying then does no name
+ * lookups and no type checks beyond those of the coercions themselves.
+ * <p>
+ * Instances are immutable, and safe to share between threads.
+ */
+public final class BeanMapper<S, T> {
+
+    private final Class<S> sourceType;
+
+    private final Class<T> targetType;
+
+    private final Step[] steps;
+
+    /**
+     * Create a mapper copying each source property to the target property of the same name, where there is one.
+     */
+    public BeanMapper(Class<S> sourceType, Class<T> targetType) {
+        this(sourceType, targetType, null, Reflect.METHODS, false);
+    }
+
+    /**
+     * Create a mapper copying the source properties named by the given mapping's keys to the target properties named
+     * by its values.
+     */
+    public BeanMapper(Class<S> sourceType, Class<T> targetType, Map<String, String> mapping) {
+        this(sourceType, targetType, mapping, Reflect.METHODS, false);
+    }
+
+    /**
+     * Create a mapper using the given mapping (or matching names, if null), reflecting through the given reflect
+     * instance, and optionally coercing values strictly (i.e. failing on values that can't be coerced, rather than
+     * using null or the primitive default).
+     */
+    public BeanMapper(Class<S> sourceType, Class<T> targetType, Map<String, String> mapping, Reflect reflect, boolean strict) {
+        this.sourceType = notNull(sourceType, "source type cannot be null");
+        this.targetType = notNull(targetType, "target type cannot be null");
+        notNull(reflect, "reflect cannot be null");
+
+        Reflector sourceReflector = reflect.getReflector(sourceType);
+        Reflector targetReflector = reflect.getReflector(targetType);
+
+        if (mapping == null) {
+            mapping = new LinkedHashMap<String, String>();
+            for (Accessor accessor : sourceReflector.getAccessors()) {
+                if (targetReflector.getMutator(accessor.getName()) != null) {
+                    mapping.put(accessor.getName(), accessor.getName());
+                }
+            }
+        }
+
+        List<Step> steps = new ArrayList<Step>(mapping.size());
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            Accessor accessor = sourceReflector.getAccessor(entry.getKey());
+            if (accessor == null) {
+                throw new IllegalArgumentException("no accessor for property: '" + entry.getKey() + "' on type: " + sourceType.getName());
+            }
+            Mutator mutator = targetReflector.getMutator(entry.getValue());
+            if (mutator == null) {
+                throw new IllegalArgumentException("no mutator for property: '" + entry.getValue() + "' on type: " + targetType.getName());
+            }
+            steps.add(createStep(accessor, mutator, strict));
+        }
+        this.steps = steps.toArray(new Step[steps.size()]);
+    }
+
+    public Class<S> getSourceType() {
+        return sourceType;
+    }
+
+    public Class<T> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * Copies the mapped properties of the source to the target, returning the target.
+     */
+    public T copy(S source, T target) {
+        Step[] steps = this.steps;
+        for (int i = 0; i < steps.length; i++) {
+            steps[i].copy(source, target);
+        }
+        return target;
+    }
+
+    /**
+     * Copies each source to a new target from the given supplier, returning the targets in source order. Null sources
+     * give null targets.
+     */
+    public List<T> copyAll(List<? extends S> sources, Supplier<? extends T> targetSupplier) {
+        return copyAll(sources, targetSupplier, false);
+    }
+
+    /**
+     * Copies each source to a new target from the given supplier, optionally in parallel on the common fork-join pool,
+     * returning the targets in source order. Null sources give null targets. When copying in parallel, the supplier is
+     * called from many threads, so must be thread-safe.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> copyAll(final List<? extends S> sources, final Supplier<? extends T> targetSupplier, boolean parallel) {
+        notNull(sources, "sources cannot be null");
+        notNull(targetSupplier, "target supplier cannot be null");
+
+        if (!parallel) {
+            List<T> targets = new ArrayList<T>(sources.size());
+            for (S source : sources) {
+                targets.add((source != null) ? copy(source, targetSupplier.get()) : null);
+            }
+            return targets;
+        }
+
+        // index based, so each worker writes its own slots and order is kept; random access lists split best
+        final Object[] targets = new Object[sources.size()];
+        IntStream.range(0, targets.length).parallel().forEach(new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                S source = sources.get(i);
+                targets[i] = (source != null) ? copy(source, targetSupplier.get()) : null;
+            }
+        });
+        return new ArrayList<T>((List<T>)Arrays.asList(targets));
+    }
+
+    private static Step createStep(Accessor accessor, Mutator mutator, boolean strict) {
+        Class<?> sourceType = accessor.getType();
+        Class<?> targetType = mutator.getType();
+        if (sourceType == targetType) {
+            if (sourceType == int.class && accessor instanceof IntAccessor && mutator instanceof IntMutator) {
+                return new IntStep((IntAccessor)accessor, (IntMutator)mutator);
+            }
+            if (sourceType == long.class && accessor instanceof LongAccessor && mutator instanceof LongMutator) {
+                return new LongStep((LongAccessor)accessor, (LongMutator)mutator);
+            }
+            if (sourceType == double.class && accessor instanceof DoubleAccessor && mutator instanceof DoubleMutator) {
+                return new DoubleStep((DoubleAccessor)accessor, (DoubleMutator)mutator);
+            }
+            if (sourceType == boolean.class && accessor instanceof BooleanAccessor && mutator instanceof BooleanMutator) {
+                return new BooleanStep((BooleanAccessor)accessor, (BooleanMutator)mutator);
+            }
+        }
+        // no coercion needed when any value read can be written as is (nulls aside, which only matter to primitives)
+        if (sourceType == targetType || (!targetType.isPrimitive() && targetType.isAssignableFrom(sourceType))) {
+            return new Step(accessor, mutator);
+        }
+        return new CoercingStep(accessor, mutator, CoercerUtil.coercerFor(targetType), strict);
+    }
+
+    private static class Step {
+
+        protected final Accessor accessor;
+        protected final Mutator mutator;
+
+        Step(Accessor accessor, Mutator mutator) {
+            this.accessor = accessor;
+            this.mutator = mutator;
+        }
+
+        void copy(Object source, Object target) {
+            mutator.mutate(target, accessor.access(source));
+        }
+    }
+
+    private static class CoercingStep extends Step {
+
+        private final Coercer coercer;
+        private final Class<?> type;
+        private final boolean strict;
+
+        CoercingStep(Accessor accessor, Mutator mutator, Coercer coercer, boolean strict) {
+            super(accessor, mutator);
+            this.coercer = coercer;
+            this.type = mutator.getType();
+            this.strict = strict;
+        }
+
+        @Override
+        void copy(Object source, Object target) {
+            mutator.mutate(target, coercer.coerce(accessor.access(source), type, strict));
+        }
+    }
+
+    private static class IntStep extends Step {
+
+        private final IntAccessor intAccessor;
+        private final IntMutator intMutator;
+
+        IntStep(IntAccessor accessor, IntMutator mutator) {
+            super(accessor, mutator);
+            this.intAccessor = accessor;
+            this.intMutator = mutator;
+        }
+
+        @Override
+        void copy(Object source, Object target) {
+            intMutator.mutateInt(target, intAccessor.accessInt(source));
+        }
+    }
+
+    private static class LongStep extends Step {
+
+        private final LongAccessor longAccessor;
+        private final LongMutator longMutator;
+
+        LongStep(LongAccessor accessor, LongMutator mutator) {
+            super(accessor, mutator);
+            this.longAccessor = accessor;
+            this.longMutator = mutator;
+        }
+
+        @Override
+        void copy(Object source, Object target) {
+            longMutator.mutateLong(target, longAccessor.accessLong(source));
+        }
+    }
+
+    private static class DoubleStep extends Step {
+
+        private final DoubleAccessor doubleAccessor;
+        private final DoubleMutator doubleMutator;
+
+        DoubleStep(DoubleAccessor accessor, DoubleMutator mutator) {
+            super(accessor, mutator);
+            this.doubleAccessor = accessor;
+            this.doubleMutator = mutator;
+        }
+
+        @Override
+        void copy(Object source, Object target) {
+            doubleMutator.mutateDouble(target, doubleAccessor.accessDouble(source));
+        }
+    }
+
+    private static class BooleanStep extends Step {
+
+        private final BooleanAccessor booleanAccessor;
+        private final BooleanMutator booleanMutator;
+
+        BooleanStep(BooleanAccessor accessor, BooleanMutator mutator) {
+            super(accessor, mutator);
+            this.booleanAccessor = accessor;
+            this.booleanMutator = mutator;
+        }
+
+        @Override
+        void copy(Object source, Object target) {
+            booleanMutator.mutateBoolean(target, booleanAccessor.accessBoolean(source));
+        }
+    }
+}
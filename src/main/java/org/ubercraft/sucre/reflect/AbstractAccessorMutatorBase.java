@@ -1,10 +1,14 @@
 package org.ubercraft.sucre.reflect;
 
+import java.lang.annotation.Annotation;
+
 abstract class AbstractAccessorMutatorBase implements AccessorMutator {
 
     private final String name;
     private final Class<?> type;
 
+    private volatile AnnotationIndex annotationIndex = null;
+
     AbstractAccessorMutatorBase(String name, Class<?> type) {
         this.name = name;
         this.type = type;
@@ -18,6 +22,32 @@ abstract class AbstractAccessorMutatorBase implements AccessorMutator {
         return type;
     }
 
+    /**
+     * Reads the annotations of the underlying method or field, once, to build the index.
+     */
+    abstract Annotation[] findAnnotations();
+
+    public AnnotationIndex getAnnotationIndex() {
+        AnnotationIndex annotationIndex = this.annotationIndex;
+        if (annotationIndex == null) {
+            synchronized (this) {
+                annotationIndex = this.annotationIndex;
+                if (annotationIndex == null) {
+                    this.annotationIndex = annotationIndex = AnnotationIndex.of(findAnnotations());
+                }
+            }
+        }
+        return annotationIndex;
+    }
+
+    public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
+        return getAnnotationIndex().get(annotationClass);
+    }
+
+    public Annotation[] getAnnotations() {
+        return getAnnotationIndex().getAnnotations();
+    }
+
     @Override
     public String toString() {
         return getDeclaringType() + "." + getName();
@@ -0,0 +1,100 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Base reflector, resolving names and slots against a lazily created {@link PropertySlots}. The slots are created at most
+ * once, and safely published to all threads.
+ */
+abstract class AbstractReflectorBase implements Reflector {
+
+    private volatile PropertySlots slots = null;
+
+    abstract PropertySlots createSlots();
+
+    final PropertySlots slots() {
+        PropertySlots slots = this.slots;
+        if (slots == null) {
+            synchronized (this) {
+                slots = this.slots;
+                if (slots == null) {
+                    this.slots = slots = createSlots();
+                }
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public void preCache() throws Exception {
+        slots();
+    }
+
+    @Override
+    public Accessor getAccessor(String name) {
+        PropertySlots slots = slots();
+        Integer slot = slots.slots.get(name);
+        return (slot != null) ? slots.accessors[slot] : null;
+    }
+
+    @Override
+    public Iterable<Accessor> getAccessors() {
+        return slots().accessorList;
+    }
+
+    @Override
+    public Mutator getMutator(String name) {
+        PropertySlots slots = slots();
+        Integer slot = slots.slots.get(name);
+        return (slot != null) ? slots.mutators[slot] : null;
+    }
+
+    @Override
+    public Iterable<Mutator> getMutators() {
+        return slots().mutatorList;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slots().names.length;
+    }
+
+    @Override
+    public int getSlot(String name) {
+        Integer slot = slots().slots.get(name);
+        return (slot != null) ? slot : -1;
+    }
+
+    @Override
+    public String getSlotName(int slot) {
+        return slots().names[slot];
+    }
+
+    @Override
+    public Accessor getAccessor(int slot) {
+        return slots().accessors[slot];
+    }
+
+    @Override
+    public Mutator getMutator(int slot) {
+        return slots().mutators[slot];
+    }
+
+    @Override
+    public Object access(Object object, int slot) {
+        PropertySlots slots = slots();
+        Accessor accessor = slots.accessors[slot];
+        if (accessor == null) {
+            throw new ReflectException("no accessor for property: '" + slots.names[slot] + "'");
+        }
+        return accessor.access(object);
+    }
+
+    @Override
+    public void mutate(Object object, int slot, Object value) {
+        PropertySlots slots = slots();
+        Mutator mutator = slots.mutators[slot];
+        if (mutator == null) {
+            throw new ReflectException("no mutator for property: '" + slots.names[slot] + "'");
+        }
+        mutator.mutate(object, value);
+    }
+}
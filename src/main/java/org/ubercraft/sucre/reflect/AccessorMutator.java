@@ -21,4 +21,12 @@ public interface AccessorMutator {
     <T extends Annotation> T getAnnotation(Class<T> annotationClass);
 
     Annotation[] getAnnotations();
+
+    /**
+     * Returns the annotations indexed by type. The accessors and mutators created here build the index once, and share
+     * it between all callers; by default, it is built from {@link #getAnnotations()} on every call.
+     */
+    default AnnotationIndex getAnnotationIndex() {
+        return AnnotationIndex.of(getAnnotations());
+    }
 }
@@ -0,0 +1,74 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * An immutable index of the annotations on an accessor or mutator, keyed by annotation type identity. Annotations are
+ * few, so a lookup is a scan of a small array, with no reflection and no hashing.
+ */
+public final class AnnotationIndex {
+
+    public static final AnnotationIndex EMPTY = new AnnotationIndex(new Annotation[0]);
+
+    private final Class<?>[] types;
+
+    private final Annotation[] annotations;
+
+    private AnnotationIndex(Annotation[] annotations) {
+        this.annotations = annotations;
+        this.types = new Class<?>[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            types[i] = annotations[i].annotationType();
+        }
+    }
+
+    public static AnnotationIndex of(Annotation... annotations) {
+        if (annotations == null || annotations.length == 0) {
+            return EMPTY;
+        }
+        return new AnnotationIndex(annotations.clone());
+    }
+
+    public int size() {
+        return annotations.length;
+    }
+
+    public boolean isEmpty() {
+        return annotations.length == 0;
+    }
+
+    /**
+     * Returns the annotation at the given index, in declaration order.
+     */
+    public Annotation get(int index) {
+        return annotations[index];
+    }
+
+    /**
+     * Returns the annotation of the given type, or null if there isn't one.
+     */
+    public <T extends Annotation> T get(Class<T> annotationClass) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == annotationClass) {
+                return annotationClass.cast(annotations[i]);
+            }
+        }
+        return null;
+    }
+
+    public boolean contains(Class<? extends Annotation> annotationClass) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == annotationClass) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of the indexed annotations.
+     */
+    public Annotation[] getAnnotations() {
+        return annotations.clone();
+    }
+}
@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Accessor for a <code>boolean</code> property, which can be read without boxing.
+ */
+public interface BooleanAccessor extends Accessor {
+
+    boolean accessBoolean(Object object);
+}
@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Mutator for a <code>boolean</code> property, which can be written without boxing.
+ */
+public interface BooleanMutator extends Mutator {
+
+    void mutateBoolean(Object object, boolean value);
+}
@@ -0,0 +1,177 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches at most a given number of reflectors, evicting the least recently used once full. Optionally holds reflectors
+ * by soft reference, so that they may also be reclaimed under memory pressure.
+ * <p>
+ * Entries are kept in a concurrent hash map, so hits take no lock. Instead of keeping entries in access order, each entry
+ * is stamped with a clock that only ticks on a miss, and a miss that overfills the cache scans for the entry with the
+ * oldest stamp to evict. So recency is approximate: entries used since the same miss are equally recent, and eviction
+ * costs time linear in the maximum size, which is fine as it only follows building a reflector. Reflectors are built
+ * outside any lock.
+ */
+public class BoundedReflectorCache implements ReflectorCache {
+
+    private final int maximumSize;
+
+    private final boolean softValues;
+
+    private final ConcurrentMap<Class<?>, Entry> entries = new ConcurrentHashMap<Class<?>, Entry>();
+
+    // ticks once per miss
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    // so that concurrent misses don't evict more than they need to
+    private final Object evictionLock = new Object();
+
+    public BoundedReflectorCache(int maximumSize) {
+        this(maximumSize, false);
+    }
+
+    public BoundedReflectorCache(int maximumSize, boolean softValues) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximum size must be at least 1: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.softValues = softValues;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public boolean isSoftValues() {
+        return softValues;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Reflector get(Class<?> type, Function<Class<?>, Reflector> creator) {
+        for (;;) {
+            Entry entry = entries.get(type);
+            if (entry != null) {
+                Object value = entry.value;
+                if (value instanceof PendingReflector) {
+                    // another thread is building it
+                    return ((PendingReflector)value).get();
+                }
+                Reflector reflector = dereference(value);
+                if (reflector != null) {
+                    entry.touch(clock.get());
+                    return reflector;
+                }
+            }
+
+            PendingReflector pending = new PendingReflector(type, creator);
+            Entry created = new Entry(pending, clock.getAndIncrement());
+            if (entry == null ? entries.putIfAbsent(type, created) == null : entries.replace(type, entry, created)) {
+                if (entry != null) {
+                    // collected, so build again
+                    evictionCount.incrementAndGet();
+                }
+                evictExcept(created);
+                return build(type, created, pending);
+            }
+            // lost a race for the entry, so look again
+        }
+    }
+
+    private Reflector build(Class<?> type, Entry entry, PendingReflector pending) {
+        Reflector reflector = null;
+        try {
+            reflector = pending.run();
+        }
+        finally {
+            // swap in the reflector, or drop the pending entry on failure so the next request tries again (either way
+            // unless removed or evicted meanwhile)
+            if (reflector != null) {
+                entry.value = softValues ? new SoftReference<Reflector>(reflector) : reflector;
+            }
+            else {
+                entries.remove(type, entry);
+            }
+        }
+        return reflector;
+    }
+
+    private void evictExcept(Entry created) {
+        if (entries.size() <= maximumSize) {
+            return;
+        }
+        synchronized (evictionLock) {
+            while (entries.size() > maximumSize) {
+                Map.Entry<Class<?>, Entry> eldest = null;
+                long eldestStamp = Long.MAX_VALUE;
+                for (Map.Entry<Class<?>, Entry> candidate : entries.entrySet()) {
+                    long stamp = candidate.getValue().stamp;
+                    if (candidate.getValue() != created && stamp < eldestStamp) {
+                        eldest = candidate;
+                        eldestStamp = stamp;
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                if (entries.remove(eldest.getKey(), eldest.getValue())) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void remove(Class<?> type) {
+        entries.remove(type);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Reflector dereference(Object value) {
+        if (value instanceof SoftReference) {
+            return ((SoftReference<Reflector>)value).get();
+        }
+        return (Reflector)value;
+    }
+
+    private static final class Entry {
+
+        // the reflector (or a soft reference to it), or a pending reflector while it's being built
+        volatile Object value;
+
+        // the clock when last used
+        volatile long stamp;
+
+        Entry(Object value, long stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+        void touch(long now) {
+            // only write when the clock has moved, so that hits on a hot entry don't keep invalidating its cache line
+            if (stamp != now) {
+                stamp = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.function.Function;
+
+/**
+ * Caches reflectors with a <code>ClassValue</code>, so that lookups avoid a hash probe, and a cached reflector does not
+ * keep its type (or the type's class loader) reachable: both are collected together once the type is unloaded.
+ */
+public class ClassValueReflectorCache implements ReflectorCache {
+
+    // replaced, rather than emptied, to clear the cache
+    private volatile ClassValue<Holder> holders = newHolders();
+
+    public ClassValueReflectorCache() {}
+
+    @Override
+    public Reflector get(Class<?> type, Function<Class<?>, Reflector> creator) {
+        return holders.get(type).get(type, creator);
+    }
+
+    @Override
+    public void remove(Class<?> type) {
+        holders.remove(type);
+    }
+
+    @Override
+    public void clear() {
+        holders = newHolders();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        // never evicts
+        return 0L;
+    }
+
+    private static ClassValue<Holder> newHolders() {
+        return new ClassValue<Holder>() {
+            @Override
+            protected Holder computeValue(Class<?> type) {
+                return new Holder();
+            }
+        };
+    }
+
+    // class values may be computed by racing threads, so the (cheap) holder is raced, and the reflector created by
+    // whichever thread first gets the winning holder
+    private static class Holder {
+
+        private volatile Reflector reflector;
+
+        Reflector get(Class<?> type, Function<Class<?>, Reflector> creator) {
+            Reflector reflector = this.reflector;
+            if (reflector == null) {
+                synchronized (this) {
+                    reflector = this.reflector;
+                    if (reflector == null) {
+                        this.reflector = reflector = creator.apply(type);
+                    }
+                }
+            }
+            return reflector;
+        }
+    }
+}
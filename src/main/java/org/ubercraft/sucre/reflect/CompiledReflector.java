@@ -0,0 +1,191 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class for reflectors generated at compile time for {@link Reflectable} types. Subclasses supply the property
+ * metadata to the constructor, and override {@link #access(Object, int)} and {@link #mutate(Object, int, Object)} with a
+ * <code>switch</code> calling each accessor and mutator method directly, deferring to the super methods for any slot
+ * they don't handle.
+ * <p>
+ * No reflection takes place to create or use these reflectors. The underlying methods are only looked up when asked
+ * for, i.e. for their annotations or declaring type.
+ */
+public abstract class CompiledReflector extends AbstractReflectorBase {
+
+    /**
+     * The suffix appended to a type's binary name to give the name of its generated reflector class.
+     */
+    public static final String CLASS_NAME_SUFFIX = "$$SucreReflector";
+
+    private final Class<?> type;
+
+    private final String[] names;
+    private final String[] accessorNames;
+    private final Class<?>[] accessorTypes;
+    private final String[] mutatorNames;
+    private final Class<?>[] mutatorTypes;
+
+    /**
+     * Each array is indexed by slot, with a null method name (and type) for a missing accessor or mutator.
+     */
+    protected CompiledReflector(Class<?> type, String[] names, String[] accessorNames, Class<?>[] accessorTypes, String[] mutatorNames, Class<?>[] mutatorTypes) {
+        this.type = type;
+        this.names = names;
+        this.accessorNames = accessorNames;
+        this.accessorTypes = accessorTypes;
+        this.mutatorNames = mutatorNames;
+        this.mutatorTypes = mutatorTypes;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    final PropertySlots createSlots() {
+        Map<String, Accessor> accessors = new HashMap<String, Accessor>();
+        Map<String, Mutator> mutators = new HashMap<String, Mutator>();
+        for (int slot = 0; slot < names.length; slot++) {
+            if (accessorNames[slot] != null) {
+                accessors.put(names[slot], new CompiledAccessorImpl(slot));
+            }
+            if (mutatorNames[slot] != null) {
+                mutators.put(names[slot], new CompiledMutatorImpl(slot));
+            }
+        }
+        return new PropertySlots(Arrays.asList(names), accessors, mutators);
+    }
+
+    /**
+     * Creates the generated reflector for the given type, or returns null if the type is not {@link Reflectable}, or
+     * its reflector was not generated.
+     */
+    static Reflector createReflector(Class<?> type) {
+        if (!type.isAnnotationPresent(Reflectable.class)) {
+            return null;
+        }
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(type.getName() + CLASS_NAME_SUFFIX, true, type.getClassLoader());
+        }
+        catch (ClassNotFoundException e) {
+            // annotation processing was not enabled for this type
+            return null;
+        }
+        if (!CompiledReflector.class.isAssignableFrom(clazz)) {
+            throw new ReflectException("not a compiled reflector: " + clazz.getName());
+        }
+        try {
+            return (Reflector)clazz.getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw new ReflectException("failed to create compiled reflector: " + clazz.getName(), e);
+        }
+    }
+
+    private abstract class CompiledAccessorMutator extends AbstractAccessorMutatorBase implements AccessorMutator, MethodReflector {
+
+        protected final int slot;
+
+        // looked up on demand
+        private volatile Method method;
+
+        CompiledAccessorMutator(int slot, Class<?> type) {
+            super(names[slot], type);
+            this.slot = slot;
+        }
+
+        abstract Method findMethod() throws NoSuchMethodException;
+
+        @Override
+        public Method getMethod() {
+            Method method = this.method;
+            if (method == null) {
+                try {
+                    this.method = method = findMethod();
+                }
+                catch (NoSuchMethodException e) {
+                    throw new ReflectException("method for property: '" + getName() + "' not found on type: " + type.getName(), e);
+                }
+            }
+            return method;
+        }
+
+        @Override
+        public Class<?> getDeclaringType() {
+            return getMethod().getDeclaringClass();
+        }
+
+        @Override
+        public boolean isPaired() {
+            return (accessorNames[slot] != null && mutatorNames[slot] != null);
+        }
+
+        @Override
+        public Accessor getPairedAccessor() {
+            return getAccessor(slot);
+        }
+
+        @Override
+        public Mutator getPairedMutator() {
+            return getMutator(slot);
+        }
+
+        @Override
+        Annotation[] findAnnotations() {
+            return getMethod().getAnnotations();
+        }
+    }
+
+    private class CompiledAccessorImpl extends CompiledAccessorMutator implements Accessor {
+
+        CompiledAccessorImpl(int slot) {
+            super(slot, accessorTypes[slot]);
+        }
+
+        @Override
+        Method findMethod() throws NoSuchMethodException {
+            return type.getMethod(accessorNames[slot]);
+        }
+
+        @Override
+        public Object access(Object object) {
+            return CompiledReflector.this.access(object, slot);
+        }
+    }
+
+    private class CompiledMutatorImpl extends CompiledAccessorMutator implements Mutator {
+
+        CompiledMutatorImpl(int slot) {
+            super(slot, mutatorTypes[slot]);
+        }
+
+        @Override
+        Method findMethod() throws NoSuchMethodException {
+            try {
+                return type.getMethod(mutatorNames[slot], mutatorTypes[slot]);
+            }
+            catch (NoSuchMethodException e) {
+                // the type is as seen from the reflected type, so may be a type argument of a method declared by a generic
+                // supertype, which takes the erasure of its type variable
+                for (Method method : type.getMethods()) {
+                    if (method.getName().equals(mutatorNames[slot]) && method.getParameterCount() == 1 && !method.isBridge()
+                            && method.getParameterTypes()[0].isAssignableFrom(mutatorTypes[slot])) {
+                        return method;
+                    }
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void mutate(Object object, Object value) {
+            CompiledReflector.this.mutate(object, slot, value);
+        }
+    }
+}
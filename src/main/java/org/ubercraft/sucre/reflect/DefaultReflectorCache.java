@@ -0,0 +1,65 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Caches reflectors in a concurrent hash map. Cached types (and so their class loaders) are held strongly until they are
+ * removed, or the cache is cleared.
+ * <p>
+ * Reflectors are built outside the map's locks, so a factory may get other reflectors while building one.
+ */
+public class DefaultReflectorCache implements ReflectorCache {
+
+    // holds the reflector, or a pending reflector while it's being built
+    private final ConcurrentMap<Class<?>, Object> reflectors = new ConcurrentHashMap<Class<?>, Object>();
+
+    public DefaultReflectorCache() {}
+
+    @Override
+    public Reflector get(Class<?> type, Function<Class<?>, Reflector> creator) {
+        Object value = reflectors.get(type);
+        if (value == null) {
+            PendingReflector pending = new PendingReflector(type, creator);
+            value = reflectors.putIfAbsent(type, pending);
+            if (value == null) {
+                Reflector reflector = null;
+                try {
+                    reflector = pending.run();
+                }
+                finally {
+                    // swap in the reflector, or drop the pending one on failure so the next request tries again (either
+                    // way unless removed meanwhile)
+                    if (reflector != null) {
+                        reflectors.replace(type, pending, reflector);
+                    }
+                    else {
+                        reflectors.remove(type, pending);
+                    }
+                }
+                return reflector;
+            }
+        }
+        if (value instanceof PendingReflector) {
+            return ((PendingReflector)value).get();
+        }
+        return (Reflector)value;
+    }
+
+    @Override
+    public void remove(Class<?> type) {
+        reflectors.remove(type);
+    }
+
+    @Override
+    public void clear() {
+        reflectors.clear();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        // never evicts
+        return 0L;
+    }
+}
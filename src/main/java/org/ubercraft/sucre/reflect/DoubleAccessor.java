@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Accessor for a <code>double</code> property, which can be read without boxing.
+ */
+public interface DoubleAccessor extends Accessor {
+
+    double accessDouble(Object object);
+}
@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Mutator for a <code>double</code> property, which can be written without boxing.
+ */
+public interface DoubleMutator extends Mutator {
+
+    void mutateDouble(Object object, double value);
+}
@@ -0,0 +1,27 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Memory ordering used by var handle backed field accessors and mutators.
+ */
+public enum FieldAccessMode {
+
+    /**
+     * Plain reads and writes, with no ordering guarantees beyond those of ordinary field access.
+     */
+    PLAIN,
+
+    /**
+     * Opaque reads and writes: coherent per field and never elided, but unordered with respect to other fields.
+     */
+    OPAQUE,
+
+    /**
+     * Acquire reads and release writes, so a reader sees everything the writer did before publishing.
+     */
+    ACQUIRE_RELEASE,
+
+    /**
+     * Volatile reads and writes.
+     */
+    VOLATILE
+}
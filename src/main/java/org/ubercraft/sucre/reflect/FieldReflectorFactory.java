@@ -1,11 +1,15 @@
 package org.ubercraft.sucre.reflect;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,68 +18,46 @@ import java.util.Map;
  */
 public class FieldReflectorFactory implements ReflectorFactory {
 
-    public FieldReflectorFactory() {}
+    // null for plain java reflection, otherwise var handles are used with the given mode
+    private final FieldAccessMode accessMode;
+
+    public FieldReflectorFactory() {
+        this(null);
+    }
+
+    /**
+     * Subclasses may request that fields are read and written through var handles, using the given access mode.
+     */
+    protected FieldReflectorFactory(FieldAccessMode accessMode) {
+        this.accessMode = accessMode;
+    }
 
     @Override
     public Reflector createReflector(Class<?> type) {
-        return new FieldReflectorImpl(type);
+        return new FieldReflectorImpl(type, accessMode);
     }
 
-    private static class FieldReflectorImpl implements Reflector {
+    private static class FieldReflectorImpl extends AbstractReflectorBase {
 
         private Class<?> type;
 
-        private Map<String, ? super FieldAccessorMutator> accessorsMutators = null;
+        private final FieldAccessMode accessMode;
 
-        FieldReflectorImpl(Class<?> type) {
+        FieldReflectorImpl(Class<?> type, FieldAccessMode accessMode) {
             this.type = type;
+            this.accessMode = accessMode;
         }
 
         @Override
-        public void preCache() throws Exception {
-            accessorsMutators();
-        }
-
-        @Override
-        public Accessor getAccessor(String name) {
-            return (Accessor)getAccessorMutator(name);
-        }
-
-        @Override
-        @SuppressWarnings("unchecked")
-        public Iterable<Accessor> getAccessors() {
-            return (Iterable<Accessor>)iterateAccessorsMutators();
-        }
-
-        @Override
-        public Mutator getMutator(String name) {
-            return (Mutator)getAccessorMutator(name);
-        }
-
-        @Override
-        @SuppressWarnings("unchecked")
-        public Iterable<Mutator> getMutators() {
-            return (Iterable<Mutator>)iterateAccessorsMutators();
-        }
-
-        private Object getAccessorMutator(String name) {
-            return accessorsMutators().get(name);
+        PropertySlots createSlots() {
+            // slots are assigned in field declaration order, super-class fields first
+            Map<String, FieldAccessorMutator> accessorsMutators = createAccessorMutatorMap();
+            return new PropertySlots(accessorsMutators.keySet(), accessorsMutators, accessorsMutators);
         }
 
-        private Iterable<? super FieldAccessorMutator> iterateAccessorsMutators() {
-            return accessorsMutators().values();
-        }
+        private Map<String, FieldAccessorMutator> createAccessorMutatorMap() {
 
-        private Map<String, ? super FieldAccessorMutator> accessorsMutators() {
-            if (accessorsMutators == null) {
-                accessorsMutators = createAccessorMutatorMap();
-            }
-            return accessorsMutators;
-        }
-
-        private Map<String, ? super FieldAccessorMutator> createAccessorMutatorMap() {
-
-            Map<String, ? super FieldAccessorMutator> accessorsMutators = new HashMap<String, FieldAccessorMutator>();
+            Map<String, FieldAccessorMutator> accessorsMutators = new LinkedHashMap<String, FieldAccessorMutator>();
 
             // get all declared fields from class hierarchy
             List<Field> fieldList = findAllDeclaredFields(type);
@@ -95,16 +77,60 @@ public class FieldReflectorFactory implements ReflectorFactory {
                 String fieldName = field.getName();
 
                 // create field accessor/mutator
-                accessorsMutators.put(fieldName, new FieldAccessorMutator(field, fieldName, fieldType));
+                accessorsMutators.put(fieldName, createAccessorMutator(field, fieldName, fieldType));
             }
 
             // ensure fields are accessible
-            Field[] fields = (Field[])fieldList.toArray(new Field[fieldList.size()]);
+            Field[] fields = fieldList.toArray(new Field[fieldList.size()]);
             Field.setAccessible(fields, true);
 
             return accessorsMutators;
         }
 
+        private FieldAccessorMutator createAccessorMutator(Field field, String name, Class<?> type) {
+            // final fields can only be written reflectively, so they stay with plain reflection
+            if (accessMode != null && !Modifier.isFinal(field.getModifiers())) {
+                VarHandle varHandle = findVarHandle(field);
+                if (varHandle != null) {
+                    if (type == int.class) {
+                        return new VarHandleIntFieldAccessorMutator(field, name, type, varHandle, accessMode);
+                    }
+                    if (type == long.class) {
+                        return new VarHandleLongFieldAccessorMutator(field, name, type, varHandle, accessMode);
+                    }
+                    if (type == double.class) {
+                        return new VarHandleDoubleFieldAccessorMutator(field, name, type, varHandle, accessMode);
+                    }
+                    if (type == boolean.class) {
+                        return new VarHandleBooleanFieldAccessorMutator(field, name, type, varHandle, accessMode);
+                    }
+                    return new VarHandleFieldAccessorMutator(field, name, type, varHandle, accessMode);
+                }
+            }
+            if (type == int.class) {
+                return new IntFieldAccessorMutator(field, name, type);
+            }
+            if (type == long.class) {
+                return new LongFieldAccessorMutator(field, name, type);
+            }
+            if (type == double.class) {
+                return new DoubleFieldAccessorMutator(field, name, type);
+            }
+            if (type == boolean.class) {
+                return new BooleanFieldAccessorMutator(field, name, type);
+            }
+            return new FieldAccessorMutator(field, name, type);
+        }
+
+        private static VarHandle findVarHandle(Field field) {
+            try {
+                return MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(field);
+            }
+            catch (Exception e) {
+                return null;
+            }
+        }
+
         private static List<Field> findAllDeclaredFields(Class<?> type) {
             List<Field> fieldList = new ArrayList<Field>();
             findAllDeclaredFields(type, fieldList);
@@ -112,15 +138,15 @@ public class FieldReflectorFactory implements ReflectorFactory {
         }
 
         private static void findAllDeclaredFields(Class<?> type, List<Field> fieldList) {
+            Class<?> superType = type.getSuperclass();
+            if (superType != null && superType != Object.class) {
+                findAllDeclaredFields(superType, fieldList);
+            }
+
             Field[] declaredFields = type.getDeclaredFields();
             for (int i = 0; i < declaredFields.length; i++) {
                 fieldList.add(declaredFields[i]);
             }
-
-            type = type.getSuperclass();
-            if (type == Object.class) return;
-
-            findAllDeclaredFields(type, fieldList);
         }
 
         // used to cache accessor/mutator fields for types
@@ -185,13 +211,431 @@ public class FieldReflectorFactory implements ReflectorFactory {
             }
 
             @Override
-            public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
-                return field.getAnnotation(annotationClass);
+            Annotation[] findAnnotations() {
+                return field.getAnnotations();
+            }
+        }
+
+        // used to cache var handle accessor/mutator fields for types; the access mode's handles are resolved once, and
+        // invoked exactly
+        private static class VarHandleFieldAccessorMutator extends FieldAccessorMutator implements VarHandleReflector {
+
+            private final VarHandle varHandle;
+            private final FieldAccessMode accessMode;
+
+            // (Object)Object and (Object, Object)void
+            private final MethodHandle getter;
+            private final MethodHandle setter;
+
+            VarHandleFieldAccessorMutator(Field field, String name, Class<?> type, VarHandle varHandle, FieldAccessMode accessMode) {
+                super(field, name, type);
+                this.varHandle = varHandle;
+                this.accessMode = accessMode;
+                this.getter = getter(MethodType.methodType(Object.class, Object.class));
+                this.setter = setter(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+
+            final MethodHandle getter(MethodType type) {
+                return varHandle.toMethodHandle(getMode(accessMode)).asType(type);
+            }
+
+            final MethodHandle setter(MethodType type) {
+                return varHandle.toMethodHandle(setMode(accessMode)).asType(type);
+            }
+
+            private static VarHandle.AccessMode getMode(FieldAccessMode accessMode) {
+                switch (accessMode) {
+                    case OPAQUE:
+                        return VarHandle.AccessMode.GET_OPAQUE;
+                    case ACQUIRE_RELEASE:
+                        return VarHandle.AccessMode.GET_ACQUIRE;
+                    case VOLATILE:
+                        return VarHandle.AccessMode.GET_VOLATILE;
+                    default:
+                        return VarHandle.AccessMode.GET;
+                }
+            }
+
+            private static VarHandle.AccessMode setMode(FieldAccessMode accessMode) {
+                switch (accessMode) {
+                    case OPAQUE:
+                        return VarHandle.AccessMode.SET_OPAQUE;
+                    case ACQUIRE_RELEASE:
+                        return VarHandle.AccessMode.SET_RELEASE;
+                    case VOLATILE:
+                        return VarHandle.AccessMode.SET_VOLATILE;
+                    default:
+                        return VarHandle.AccessMode.SET;
+                }
+            }
+
+            // fails as Field.get/set do: a mismatched object or value is an IllegalArgumentException
+            final RuntimeException failure(String operation, Throwable th) {
+                if (th instanceof ClassCastException) {
+                    return new IllegalArgumentException(operation + " on field: '" + this + "' failed", th);
+                }
+                if (th instanceof RuntimeException) {
+                    return (RuntimeException)th;
+                }
+                if (th instanceof Error) {
+                    throw (Error)th;
+                }
+                return new ReflectException(operation + " on field: '" + this + "' failed", th);
+            }
+
+            @Override
+            public VarHandle getVarHandle() {
+                return varHandle;
             }
 
             @Override
-            public Annotation[] getAnnotations() {
-                return field.getAnnotations();
+            public FieldAccessMode getAccessMode() {
+                return accessMode;
+            }
+
+            @Override
+            public Object access(Object object) {
+                try {
+                    return (Object)getter.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw failure("access", th);
+                }
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                if (value == null && getType().isPrimitive()) {
+                    throw new IllegalArgumentException("mutate on field: '" + this + "' failed, null for primitive");
+                }
+                try {
+                    setter.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw failure("mutate", th);
+                }
+            }
+
+            // the typed methods are exact in the matching primitive subclass, and unbox otherwise
+
+            @Override
+            public int getInt(Object object) {
+                return (Integer)access(object);
+            }
+
+            @Override
+            public long getLong(Object object) {
+                return (Long)access(object);
+            }
+
+            @Override
+            public double getDouble(Object object) {
+                return (Double)access(object);
+            }
+
+            @Override
+            public boolean getBoolean(Object object) {
+                return (Boolean)access(object);
+            }
+
+            @Override
+            public void setInt(Object object, int value) {
+                mutate(object, value);
+            }
+
+            @Override
+            public void setLong(Object object, long value) {
+                mutate(object, value);
+            }
+
+            @Override
+            public void setDouble(Object object, double value) {
+                mutate(object, value);
+            }
+
+            @Override
+            public void setBoolean(Object object, boolean value) {
+                mutate(object, value);
+            }
+        }
+
+        /*
+         * Primitive specializations follow...
+         */
+
+        private static class IntFieldAccessorMutator extends FieldAccessorMutator implements IntAccessor, IntMutator {
+
+            IntFieldAccessorMutator(Field field, String name, Class<?> type) {
+                super(field, name, type);
+            }
+
+            @Override
+            public int accessInt(Object object) {
+                try {
+                    return getField().getInt(object);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("access on field: '" + this + "' failed", e);
+                }
+            }
+
+            @Override
+            public void mutateInt(Object object, int value) {
+                try {
+                    getField().setInt(object, value);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("mutate on field: '" + this + "' failed", e);
+                }
+            }
+        }
+
+        private static class LongFieldAccessorMutator extends FieldAccessorMutator implements LongAccessor, LongMutator {
+
+            LongFieldAccessorMutator(Field field, String name, Class<?> type) {
+                super(field, name, type);
+            }
+
+            @Override
+            public long accessLong(Object object) {
+                try {
+                    return getField().getLong(object);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("access on field: '" + this + "' failed", e);
+                }
+            }
+
+            @Override
+            public void mutateLong(Object object, long value) {
+                try {
+                    getField().setLong(object, value);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("mutate on field: '" + this + "' failed", e);
+                }
+            }
+        }
+
+        private static class DoubleFieldAccessorMutator extends FieldAccessorMutator implements DoubleAccessor, DoubleMutator {
+
+            DoubleFieldAccessorMutator(Field field, String name, Class<?> type) {
+                super(field, name, type);
+            }
+
+            @Override
+            public double accessDouble(Object object) {
+                try {
+                    return getField().getDouble(object);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("access on field: '" + this + "' failed", e);
+                }
+            }
+
+            @Override
+            public void mutateDouble(Object object, double value) {
+                try {
+                    getField().setDouble(object, value);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("mutate on field: '" + this + "' failed", e);
+                }
+            }
+        }
+
+        private static class BooleanFieldAccessorMutator extends FieldAccessorMutator implements BooleanAccessor, BooleanMutator {
+
+            BooleanFieldAccessorMutator(Field field, String name, Class<?> type) {
+                super(field, name, type);
+            }
+
+            @Override
+            public boolean accessBoolean(Object object) {
+                try {
+                    return getField().getBoolean(object);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("access on field: '" + this + "' failed", e);
+                }
+            }
+
+            @Override
+            public void mutateBoolean(Object object, boolean value) {
+                try {
+                    getField().setBoolean(object, value);
+                }
+                catch (IllegalAccessException e) {
+                    throw new ReflectException("mutate on field: '" + this + "' failed", e);
+                }
+            }
+        }
+
+        private static class VarHandleIntFieldAccessorMutator extends VarHandleFieldAccessorMutator implements IntAccessor, IntMutator {
+
+            private final MethodHandle intGetter;
+            private final MethodHandle intSetter;
+
+            VarHandleIntFieldAccessorMutator(Field field, String name, Class<?> type, VarHandle varHandle, FieldAccessMode accessMode) {
+                super(field, name, type, varHandle, accessMode);
+                this.intGetter = getter(MethodType.methodType(int.class, Object.class));
+                this.intSetter = setter(MethodType.methodType(void.class, Object.class, int.class));
+            }
+
+            @Override
+            public int getInt(Object object) {
+                try {
+                    return (int)intGetter.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw failure("access", th);
+                }
+            }
+
+            @Override
+            public void setInt(Object object, int value) {
+                try {
+                    intSetter.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw failure("mutate", th);
+                }
+            }
+
+            @Override
+            public int accessInt(Object object) {
+                return getInt(object);
+            }
+
+            @Override
+            public void mutateInt(Object object, int value) {
+                setInt(object, value);
+            }
+        }
+
+        private static class VarHandleLongFieldAccessorMutator extends VarHandleFieldAccessorMutator implements LongAccessor, LongMutator {
+
+            private final MethodHandle longGetter;
+            private final MethodHandle longSetter;
+
+            VarHandleLongFieldAccessorMutator(Field field, String name, Class<?> type, VarHandle varHandle, FieldAccessMode accessMode) {
+                super(field, name, type, varHandle, accessMode);
+                this.longGetter = getter(MethodType.methodType(long.class, Object.class));
+                this.longSetter = setter(MethodType.methodType(void.class, Object.class, long.class));
+            }
+
+            @Override
+            public long getLong(Object object) {
+                try {
+                    return (long)longGetter.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw failure("access", th);
+                }
+            }
+
+            @Override
+            public void setLong(Object object, long value) {
+                try {
+                    longSetter.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw failure("mutate", th);
+                }
+            }
+
+            @Override
+            public long accessLong(Object object) {
+                return getLong(object);
+            }
+
+            @Override
+            public void mutateLong(Object object, long value) {
+                setLong(object, value);
+            }
+        }
+
+        private static class VarHandleDoubleFieldAccessorMutator extends VarHandleFieldAccessorMutator implements DoubleAccessor, DoubleMutator {
+
+            private final MethodHandle doubleGetter;
+            private final MethodHandle doubleSetter;
+
+            VarHandleDoubleFieldAccessorMutator(Field field, String name, Class<?> type, VarHandle varHandle, FieldAccessMode accessMode) {
+                super(field, name, type, varHandle, accessMode);
+                this.doubleGetter = getter(MethodType.methodType(double.class, Object.class));
+                this.doubleSetter = setter(MethodType.methodType(void.class, Object.class, double.class));
+            }
+
+            @Override
+            public double getDouble(Object object) {
+                try {
+                    return (double)doubleGetter.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw failure("access", th);
+                }
+            }
+
+            @Override
+            public void setDouble(Object object, double value) {
+                try {
+                    doubleSetter.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw failure("mutate", th);
+                }
+            }
+
+            @Override
+            public double accessDouble(Object object) {
+                return getDouble(object);
+            }
+
+            @Override
+            public void mutateDouble(Object object, double value) {
+                setDouble(object, value);
+            }
+        }
+
+        private static class VarHandleBooleanFieldAccessorMutator extends VarHandleFieldAccessorMutator implements BooleanAccessor, BooleanMutator {
+
+            private final MethodHandle booleanGetter;
+            private final MethodHandle booleanSetter;
+
+            VarHandleBooleanFieldAccessorMutator(Field field, String name, Class<?> type, VarHandle varHandle, FieldAccessMode accessMode) {
+                super(field, name, type, varHandle, accessMode);
+                this.booleanGetter = getter(MethodType.methodType(boolean.class, Object.class));
+                this.booleanSetter = setter(MethodType.methodType(void.class, Object.class, boolean.class));
+            }
+
+            @Override
+            public boolean getBoolean(Object object) {
+                try {
+                    return (boolean)booleanGetter.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw failure("access", th);
+                }
+            }
+
+            @Override
+            public void setBoolean(Object object, boolean value) {
+                try {
+                    booleanSetter.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw failure("mutate", th);
+                }
+            }
+
+            @Override
+            public boolean accessBoolean(Object object) {
+                return getBoolean(object);
+            }
+
+            @Override
+            public void mutateBoolean(Object object, boolean value) {
+                setBoolean(object, value);
             }
         }
     }
@@ -0,0 +1,251 @@
+package org.ubercraft.sucre.reflect;
+
+import static org.ubercraft.sucre.reflect.ReflectHelper.checkArgument;
+import static org.ubercraft.sucre.reflect.ReflectHelper.checkReceiver;
+import static org.ubercraft.sucre.reflect.ReflectHelper.invocationFailure;
+import static org.ubercraft.sucre.reflect.ReflectHelper.receiverType;
+import static org.ubercraft.sucre.reflect.ReflectorGenerator.isAccessible;
+import static org.ubercraft.sucre.reflect.ReflectorGenerator.isDispatchable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reflects a class's accessors and its mutators using Java reflection on its methods, then generates a
+ * {@link ReflectorDispatcher} class for the type, which calls each accessor and mutator method directly through a
+ * <code>switch</code> on its slot. Types that generated code cannot link against (e.g. non-public types) fall back to
+ * the plain {@link MethodReflectorFactory}, as do individual methods whose parameter types are not accessible.
+ */
+public class GeneratedReflectorFactory implements ReflectorFactory {
+
+    private final MethodReflectorFactory methodReflectorFactory = new MethodReflectorFactory();
+
+    public GeneratedReflectorFactory() {}
+
+    @Override
+    public Reflector createReflector(Class<?> type) {
+        Reflector reflector = methodReflectorFactory.createReflector(type);
+        if (type.isArray() || type.isPrimitive() || !isAccessible(type)) {
+            return reflector;
+        }
+        return new GeneratedReflectorImpl(type, reflector);
+    }
+
+    private static class GeneratedReflectorImpl extends AbstractReflectorBase {
+
+        private final Class<?> type;
+
+        // supplies the reflected methods, and is the fall back for methods that can't be dispatched
+        private final Reflector methodReflector;
+
+        GeneratedReflectorImpl(Class<?> type, Reflector methodReflector) {
+            this.type = type;
+            this.methodReflector = methodReflector;
+        }
+
+        @Override
+        PropertySlots createSlots() {
+            // dispatch indexes are the method reflector's slots, leaving gaps for methods generated code can't call
+            int count = methodReflector.getSlotCount();
+            List<String> names = new ArrayList<String>(count);
+            Method[] accessorMethods = new Method[count];
+            Method[] mutatorMethods = new Method[count];
+            for (int slot = 0; slot < count; slot++) {
+                names.add(methodReflector.getSlotName(slot));
+                Accessor accessor = methodReflector.getAccessor(slot);
+                if (accessor != null && isDispatchable(type, ((MethodReflector)accessor).getMethod())) {
+                    accessorMethods[slot] = ((MethodReflector)accessor).getMethod();
+                }
+                Mutator mutator = methodReflector.getMutator(slot);
+                if (mutator != null && isDispatchable(type, ((MethodReflector)mutator).getMethod())) {
+                    mutatorMethods[slot] = ((MethodReflector)mutator).getMethod();
+                }
+            }
+
+            ReflectorDispatcher dispatcher = ReflectorGenerator.generate(type, accessorMethods, mutatorMethods);
+
+            Map<String, Accessor> accessors = new HashMap<String, Accessor>();
+            Map<String, Mutator> mutators = new HashMap<String, Mutator>();
+            for (int slot = 0; slot < count; slot++) {
+                Accessor accessor = methodReflector.getAccessor(slot);
+                if (accessor != null) {
+                    accessors.put(accessor.getName(), (accessorMethods[slot] != null) ? new DispatchedAccessorImpl(accessor, dispatcher, slot)
+                            : new GeneratedAccessorImpl(accessor));
+                }
+                Mutator mutator = methodReflector.getMutator(slot);
+                if (mutator != null) {
+                    mutators.put(mutator.getName(), (mutatorMethods[slot] != null) ? new DispatchedMutatorImpl(mutator, dispatcher, slot)
+                            : new GeneratedMutatorImpl(mutator));
+                }
+            }
+            return new PropertySlots(names, accessors, mutators);
+        }
+
+        private abstract class GeneratedAccessorMutator<T extends AccessorMutator> implements AccessorMutator, MethodReflector {
+
+            protected final T delegate;
+
+            GeneratedAccessorMutator(T delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public Method getMethod() {
+                return ((MethodReflector)delegate).getMethod();
+            }
+
+            @Override
+            public String getName() {
+                return delegate.getName();
+            }
+
+            @Override
+            public Class<?> getType() {
+                return delegate.getType();
+            }
+
+            @Override
+            public Class<?> getDeclaringType() {
+                return delegate.getDeclaringType();
+            }
+
+            @Override
+            public <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
+                return delegate.getAnnotation(annotationClass);
+            }
+
+            @Override
+            public Annotation[] getAnnotations() {
+                return delegate.getAnnotations();
+            }
+
+            @Override
+            public AnnotationIndex getAnnotationIndex() {
+                return delegate.getAnnotationIndex();
+            }
+
+            @Override
+            public String toString() {
+                return delegate.toString();
+            }
+        }
+
+        // accessor that could not be dispatched, so uses plain reflection
+        private class GeneratedAccessorImpl extends GeneratedAccessorMutator<Accessor> implements Accessor {
+
+            GeneratedAccessorImpl(Accessor delegate) {
+                super(delegate);
+            }
+
+            @Override
+            public Object access(Object object) {
+                return delegate.access(object);
+            }
+
+            @Override
+            public boolean isPaired() {
+                return (getPairedMutator() != null);
+            }
+
+            @Override
+            public Accessor getPairedAccessor() {
+                return this;
+            }
+
+            @Override
+            public Mutator getPairedMutator() {
+                return getMutator(getName());
+            }
+        }
+
+        // mutator that could not be dispatched, so uses plain reflection
+        private class GeneratedMutatorImpl extends GeneratedAccessorMutator<Mutator> implements Mutator {
+
+            GeneratedMutatorImpl(Mutator delegate) {
+                super(delegate);
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                delegate.mutate(object, value);
+            }
+
+            @Override
+            public boolean isPaired() {
+                return (getPairedAccessor() != null);
+            }
+
+            @Override
+            public Accessor getPairedAccessor() {
+                return getAccessor(getName());
+            }
+
+            @Override
+            public Mutator getPairedMutator() {
+                return this;
+            }
+        }
+
+        private class DispatchedAccessorImpl extends GeneratedAccessorImpl {
+
+            private final ReflectorDispatcher dispatcher;
+            private final int index;
+            private final Class<?> receiverType;
+
+            DispatchedAccessorImpl(Accessor delegate, ReflectorDispatcher dispatcher, int index) {
+                super(delegate);
+                this.dispatcher = dispatcher;
+                this.index = index;
+                this.receiverType = dispatchedReceiverType(getMethod());
+            }
+
+            @Override
+            public Object access(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return dispatcher.access(object, index);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        }
+
+        private class DispatchedMutatorImpl extends GeneratedMutatorImpl {
+
+            private final ReflectorDispatcher dispatcher;
+            private final int index;
+            private final Class<?> receiverType;
+            private final Class<?> parameterType;
+
+            DispatchedMutatorImpl(Mutator delegate, ReflectorDispatcher dispatcher, int index) {
+                super(delegate);
+                this.dispatcher = dispatcher;
+                this.index = index;
+                this.receiverType = dispatchedReceiverType(getMethod());
+                this.parameterType = getMethod().getParameterTypes()[0];
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                checkReceiver(receiverType, object);
+                checkArgument(parameterType, value);
+                try {
+                    dispatcher.mutate(object, index, value);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        }
+
+        // generated code casts the receiver to the reflected type, rather than to the method's declaring class
+        private Class<?> dispatchedReceiverType(Method method) {
+            return (receiverType(method) != null) ? type : null;
+        }
+    }
+}
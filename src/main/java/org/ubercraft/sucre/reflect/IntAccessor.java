@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Accessor for an <code>int</code> property, which can be read without boxing.
+ */
+public interface IntAccessor extends Accessor {
+
+    int accessInt(Object object);
+}
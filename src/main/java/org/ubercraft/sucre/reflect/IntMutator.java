@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Mutator for an <code>int</code> property, which can be written without boxing.
+ */
+public interface IntMutator extends Mutator {
+
+    void mutateInt(Object object, int value);
+}
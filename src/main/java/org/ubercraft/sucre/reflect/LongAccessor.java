@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Accessor for a <code>long</code> property, which can be read without boxing.
+ */
+public interface LongAccessor extends Accessor {
+
+    long accessLong(Object object);
+}
@@ -0,0 +1,9 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Mutator for a <code>long</code> property, which can be written without boxing.
+ */
+public interface LongMutator extends Mutator {
+
+    void mutateLong(Object object, long value);
+}
@@ -0,0 +1,13 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * This class reflects a class's accessors and its mutators using Java reflection on its methods, but binds each accessor
+ * and mutator once to a method handle (or a generated lambda, where the method is publicly accessible), so that calls
+ * avoid the overhead of <code>Method.invoke</code>.
+ */
+public class MethodHandleReflectorFactory extends MethodReflectorFactory {
+
+    public MethodHandleReflectorFactory() {
+        super(true);
+    }
+}
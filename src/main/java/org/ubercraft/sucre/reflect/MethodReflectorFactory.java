@@ -1,80 +1,85 @@
 package org.ubercraft.sucre.reflect;
 
 import static org.ubercraft.sucre.reflect.ReflectHelper.accessorMethodNameToFieldName;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindBooleanAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindDoubleAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindDoubleMutator;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindIntAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindIntMutator;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindLongAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindLongMutator;
+import static org.ubercraft.sucre.reflect.ReflectHelper.bindMutator;
 import static org.ubercraft.sucre.reflect.ReflectHelper.mutatorMethodNameToFieldName;
+import static org.ubercraft.sucre.reflect.ReflectHelper.reflectiveAccessor;
+import static org.ubercraft.sucre.reflect.ReflectHelper.reflectiveMutator;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * This class reflects a class's accessors and its mutators using Java reflection on its methods.
  */
 public class MethodReflectorFactory implements ReflectorFactory {
 
-    public MethodReflectorFactory() {}
+    private final boolean bindHandles;
+
+    public MethodReflectorFactory() {
+        this(false);
+    }
+
+    /**
+     * Subclasses may request that accessor and mutator methods are bound once to method handles (or generated lambdas),
+     * rather than going through <code>Method.invoke</code> on every call.
+     */
+    protected MethodReflectorFactory(boolean bindHandles) {
+        this.bindHandles = bindHandles;
+    }
 
     @Override
     public Reflector createReflector(Class<?> type) {
-        return new MethodReflectorImpl(type);
+        return new MethodReflectorImpl(type, bindHandles);
     }
 
-    private static class MethodReflectorImpl implements Reflector {
+    private static class MethodReflectorImpl extends AbstractReflectorBase {
 
         private Class<?> type;
 
-        private Map<String, Accessor> accessors = null;
-        private Map<String, Mutator> mutators = null;
+        private final boolean bindHandles;
 
-        MethodReflectorImpl(Class<?> type) {
+        MethodReflectorImpl(Class<?> type, boolean bindHandles) {
             this.type = type;
+            this.bindHandles = bindHandles;
         }
 
         @Override
-        public void preCache() throws Exception {
-            accessors();
-            mutators();
-        }
-
-        @Override
-        public Accessor getAccessor(String name) {
-            return (Accessor)accessors().get(name);
-        }
-
-        @Override
-        public Iterable<Accessor> getAccessors() {
-            return accessors().values();
-        }
-
-        @Override
-        public Mutator getMutator(String name) {
-            return (Mutator)mutators().get(name);
-        }
-
-        @Override
-        public Iterable<Mutator> getMutators() {
-            return mutators().values();
-        }
-
-        private Map<String, Accessor> accessors() {
-            if (accessors == null) {
-                accessors = createAccessorMap();
-            }
-            return accessors;
-        }
+        PropertySlots createSlots() {
+            Method[] methods = type.getMethods();
+            Map<String, Accessor> accessors = createAccessorMap(methods);
+            Map<String, Mutator> mutators = createMutatorMap(methods);
 
-        private Map<String, Mutator> mutators() {
-            if (mutators == null) {
-                mutators = createMutatorMap();
-            }
-            return mutators;
+            // methods are reflected in no particular order, so assign slots in property name order
+            Set<String> names = new TreeSet<String>(accessors.keySet());
+            names.addAll(mutators.keySet());
+            return new PropertySlots(names, accessors, mutators);
         }
 
-        private Map<String, Accessor> createAccessorMap() {
+        private Map<String, Accessor> createAccessorMap(Method[] methods) {
             Map<String, Accessor> accessors = new HashMap<String, Accessor>();
 
-            Method[] methods = type.getMethods();
             for (int i = 0; i < methods.length; i++) {
                 Method method = methods[i];
 
@@ -95,17 +100,16 @@ public class MethodReflectorFactory implements ReflectorFactory {
                 if (returnType == Void.TYPE) continue;
 
                 // everything checks out, add accessor to the list
-                accessors.put(fieldName, new MethodAccessorImpl(method, fieldName, returnType));
+                accessors.put(fieldName, createAccessor(method, fieldName, returnType));
             }
 
             return accessors;
         }
 
         // create method mutator map
-        private Map<String, Mutator> createMutatorMap() {
+        private Map<String, Mutator> createMutatorMap(Method[] methods) {
             Map<String, Mutator> mutators = new HashMap<String, Mutator>();
 
-            Method[] methods = type.getMethods();
             for (int i = 0; i < methods.length; i++) {
                 Method method = methods[i];
 
@@ -128,17 +132,70 @@ public class MethodReflectorFactory implements ReflectorFactory {
                 if (returnType != Void.TYPE) continue;
 
                 // everything checks out, add mutator to list
-                mutators.put(fieldName, new MethodMutatorImpl(method, fieldName, parameterType));
+                mutators.put(fieldName, createMutator(method, fieldName, parameterType));
             }
 
             return mutators;
         }
 
+        // a primitive property is bound to either a primitive function or the generic one, never both
+        private Accessor createAccessor(Method method, String name, Class<?> type) {
+            if (type == int.class) {
+                ToIntFunction<Object> intFunction = bindHandles ? bindIntAccessor(method) : null;
+                return new MethodIntAccessorImpl(method, name, type, (intFunction == null) ? accessorFunction(method) : null, intFunction);
+            }
+            if (type == long.class) {
+                ToLongFunction<Object> longFunction = bindHandles ? bindLongAccessor(method) : null;
+                return new MethodLongAccessorImpl(method, name, type, (longFunction == null) ? accessorFunction(method) : null, longFunction);
+            }
+            if (type == double.class) {
+                ToDoubleFunction<Object> doubleFunction = bindHandles ? bindDoubleAccessor(method) : null;
+                return new MethodDoubleAccessorImpl(method, name, type, (doubleFunction == null) ? accessorFunction(method) : null,
+                        doubleFunction);
+            }
+            if (type == boolean.class) {
+                Predicate<Object> predicate = bindHandles ? bindBooleanAccessor(method) : null;
+                return new MethodBooleanAccessorImpl(method, name, type, (predicate == null) ? accessorFunction(method) : null, predicate);
+            }
+            return new MethodAccessorImpl(method, name, type, accessorFunction(method));
+        }
+
+        private Function<Object, Object> accessorFunction(Method method) {
+            Function<Object, Object> function = bindHandles ? bindAccessor(method) : null;
+            return (function != null) ? function : reflectiveAccessor(method);
+        }
+
+        private Mutator createMutator(Method method, String name, Class<?> type) {
+            if (type == int.class) {
+                ObjIntConsumer<Object> intConsumer = bindHandles ? bindIntMutator(method) : null;
+                return new MethodIntMutatorImpl(method, name, type, (intConsumer == null) ? mutatorConsumer(method) : null, intConsumer);
+            }
+            if (type == long.class) {
+                ObjLongConsumer<Object> longConsumer = bindHandles ? bindLongMutator(method) : null;
+                return new MethodLongMutatorImpl(method, name, type, (longConsumer == null) ? mutatorConsumer(method) : null, longConsumer);
+            }
+            if (type == double.class) {
+                ObjDoubleConsumer<Object> doubleConsumer = bindHandles ? bindDoubleMutator(method) : null;
+                return new MethodDoubleMutatorImpl(method, name, type, (doubleConsumer == null) ? mutatorConsumer(method) : null,
+                        doubleConsumer);
+            }
+            if (type == boolean.class) {
+                return new MethodBooleanMutatorImpl(method, name, type, mutatorConsumer(method));
+            }
+            return new MethodMutatorImpl(method, name, type, mutatorConsumer(method));
+        }
+
+        private BiConsumer<Object, Object> mutatorConsumer(Method method) {
+            BiConsumer<Object, Object> consumer = bindHandles ? bindMutator(method) : null;
+            return (consumer != null) ? consumer : reflectiveMutator(method);
+        }
+
         private abstract class MethodAccessorMutator extends AbstractAccessorMutatorBase implements AccessorMutator, MethodReflector {
 
             protected final Method method;
 
-            protected boolean checkedPair = false;
+            // written after the pair, so that a thread seeing this set also sees the pair
+            protected volatile boolean checkedPair = false;
 
             MethodAccessorMutator(Method method, String name, Class<?> type) {
                 super(name, type);
@@ -156,43 +213,33 @@ public class MethodReflectorFactory implements ReflectorFactory {
             }
 
             @Override
-            public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
-                return method.getAnnotation(annotationClass);
-            }
-
-            @Override
-            public Annotation[] getAnnotations() {
+            Annotation[] findAnnotations() {
                 return method.getAnnotations();
             }
         }
 
-        // used to cache accessor methods for types
+        // used to cache accessor methods for types, calling them through plain reflection or a bound handle
         private class MethodAccessorImpl extends MethodAccessorMutator implements Accessor {
 
+            protected final Function<Object, Object> function;
+
             private Mutator pairedMutator;
 
-            MethodAccessorImpl(Method method, String name, Class<?> type) {
+            MethodAccessorImpl(Method method, String name, Class<?> type, Function<Object, Object> function) {
                 super(method, name, type);
+                this.function = function;
             }
 
             private void checkPair() {
                 if (!checkedPair) {
+                    pairedMutator = getMutator(getName());
                     checkedPair = true;
-                    pairedMutator = mutators().get(getName());
                 }
             }
 
             @Override
             public Object access(Object object) {
-                try {
-                    return method.invoke(object, (Object[])null);
-                }
-                catch (RuntimeException e) {
-                    throw e;
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+                return function.apply(object);
             }
 
             @Override
@@ -213,33 +260,28 @@ public class MethodReflectorFactory implements ReflectorFactory {
             }
         }
 
-        // used to cache mutator methods for types
+        // used to cache mutator methods for types, calling them through plain reflection or a bound handle
         private class MethodMutatorImpl extends MethodAccessorMutator implements Mutator {
 
+            protected final BiConsumer<Object, Object> consumer;
+
             private Accessor pairedAccessor;
 
-            MethodMutatorImpl(Method method, String name, Class<?> type) {
+            MethodMutatorImpl(Method method, String name, Class<?> type, BiConsumer<Object, Object> consumer) {
                 super(method, name, type);
+                this.consumer = consumer;
             }
 
             private void checkPair() {
                 if (!checkedPair) {
+                    pairedAccessor = getAccessor(getName());
                     checkedPair = true;
-                    pairedAccessor = accessors().get(getName());
                 }
             }
 
             @Override
             public void mutate(Object object, Object value) {
-                try {
-                    method.invoke(object, value);
-                }
-                catch (RuntimeException e) {
-                    throw e;
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+                consumer.accept(object, value);
             }
 
             @Override
@@ -259,5 +301,205 @@ public class MethodReflectorFactory implements ReflectorFactory {
                 return this;
             }
         }
+
+        /*
+         * Primitive specializations follow. Each is bound to a primitive function where the method is publicly reachable
+         * and handles are bound, from which the generic methods are derived. Otherwise (plain reflection, or a method
+         * only reachable through a method handle), the primitive methods go through the generic function, boxing.
+         */
+
+        private class MethodIntAccessorImpl extends MethodAccessorImpl implements IntAccessor {
+
+            private final ToIntFunction<Object> intFunction;
+
+            MethodIntAccessorImpl(Method method, String name, Class<?> type, Function<Object, Object> function, ToIntFunction<Object> intFunction) {
+                super(method, name, type, function);
+                this.intFunction = intFunction;
+            }
+
+            @Override
+            public Object access(Object object) {
+                return (intFunction != null) ? Integer.valueOf(intFunction.applyAsInt(object)) : function.apply(object);
+            }
+
+            @Override
+            public int accessInt(Object object) {
+                return (intFunction != null) ? intFunction.applyAsInt(object) : (Integer)function.apply(object);
+            }
+        }
+
+        private class MethodLongAccessorImpl extends MethodAccessorImpl implements LongAccessor {
+
+            private final ToLongFunction<Object> longFunction;
+
+            MethodLongAccessorImpl(Method method, String name, Class<?> type, Function<Object, Object> function, ToLongFunction<Object> longFunction) {
+                super(method, name, type, function);
+                this.longFunction = longFunction;
+            }
+
+            @Override
+            public Object access(Object object) {
+                return (longFunction != null) ? Long.valueOf(longFunction.applyAsLong(object)) : function.apply(object);
+            }
+
+            @Override
+            public long accessLong(Object object) {
+                return (longFunction != null) ? longFunction.applyAsLong(object) : (Long)function.apply(object);
+            }
+        }
+
+        private class MethodDoubleAccessorImpl extends MethodAccessorImpl implements DoubleAccessor {
+
+            private final ToDoubleFunction<Object> doubleFunction;
+
+            MethodDoubleAccessorImpl(Method method, String name, Class<?> type, Function<Object, Object> function,
+                    ToDoubleFunction<Object> doubleFunction) {
+                super(method, name, type, function);
+                this.doubleFunction = doubleFunction;
+            }
+
+            @Override
+            public Object access(Object object) {
+                return (doubleFunction != null) ? Double.valueOf(doubleFunction.applyAsDouble(object)) : function.apply(object);
+            }
+
+            @Override
+            public double accessDouble(Object object) {
+                return (doubleFunction != null) ? doubleFunction.applyAsDouble(object) : (Double)function.apply(object);
+            }
+        }
+
+        // boxed booleans are always cached, so even the generic function never allocates
+        private class MethodBooleanAccessorImpl extends MethodAccessorImpl implements BooleanAccessor {
+
+            private final Predicate<Object> predicate;
+
+            MethodBooleanAccessorImpl(Method method, String name, Class<?> type, Function<Object, Object> function, Predicate<Object> predicate) {
+                super(method, name, type, function);
+                this.predicate = predicate;
+            }
+
+            @Override
+            public Object access(Object object) {
+                return (predicate != null) ? Boolean.valueOf(predicate.test(object)) : function.apply(object);
+            }
+
+            @Override
+            public boolean accessBoolean(Object object) {
+                return (predicate != null) ? predicate.test(object) : (Boolean)function.apply(object);
+            }
+        }
+
+        private class MethodIntMutatorImpl extends MethodMutatorImpl implements IntMutator {
+
+            private final ObjIntConsumer<Object> intConsumer;
+
+            MethodIntMutatorImpl(Method method, String name, Class<?> type, BiConsumer<Object, Object> consumer, ObjIntConsumer<Object> intConsumer) {
+                super(method, name, type, consumer);
+                this.intConsumer = intConsumer;
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                if (intConsumer != null) {
+                    intConsumer.accept(object, (Integer)argument(value, Integer.class));
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+
+            @Override
+            public void mutateInt(Object object, int value) {
+                if (intConsumer != null) {
+                    intConsumer.accept(object, value);
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+        }
+
+        private class MethodLongMutatorImpl extends MethodMutatorImpl implements LongMutator {
+
+            private final ObjLongConsumer<Object> longConsumer;
+
+            MethodLongMutatorImpl(Method method, String name, Class<?> type, BiConsumer<Object, Object> consumer, ObjLongConsumer<Object> longConsumer) {
+                super(method, name, type, consumer);
+                this.longConsumer = longConsumer;
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                if (longConsumer != null) {
+                    longConsumer.accept(object, (Long)argument(value, Long.class));
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+
+            @Override
+            public void mutateLong(Object object, long value) {
+                if (longConsumer != null) {
+                    longConsumer.accept(object, value);
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+        }
+
+        private class MethodDoubleMutatorImpl extends MethodMutatorImpl implements DoubleMutator {
+
+            private final ObjDoubleConsumer<Object> doubleConsumer;
+
+            MethodDoubleMutatorImpl(Method method, String name, Class<?> type, BiConsumer<Object, Object> consumer,
+                    ObjDoubleConsumer<Object> doubleConsumer) {
+                super(method, name, type, consumer);
+                this.doubleConsumer = doubleConsumer;
+            }
+
+            @Override
+            public void mutate(Object object, Object value) {
+                if (doubleConsumer != null) {
+                    doubleConsumer.accept(object, (Double)argument(value, Double.class));
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+
+            @Override
+            public void mutateDouble(Object object, double value) {
+                if (doubleConsumer != null) {
+                    doubleConsumer.accept(object, value);
+                }
+                else {
+                    consumer.accept(object, value);
+                }
+            }
+        }
+
+        // boxed booleans are always cached, so the generic consumer never allocates
+        private class MethodBooleanMutatorImpl extends MethodMutatorImpl implements BooleanMutator {
+
+            MethodBooleanMutatorImpl(Method method, String name, Class<?> type, BiConsumer<Object, Object> consumer) {
+                super(method, name, type, consumer);
+            }
+
+            @Override
+            public void mutateBoolean(Object object, boolean value) {
+                consumer.accept(object, value);
+            }
+        }
+    }
+
+    // checks a boxed argument for a primitive parameter, failing as Method.invoke does for null or another type
+    private static Object argument(Object value, Class<?> boxedType) {
+        if (!boxedType.isInstance(value)) {
+            throw new IllegalArgumentException("argument type mismatch");
+        }
+        return value;
     }
 }
@@ -0,0 +1,70 @@
+package org.ubercraft.sucre.reflect;
+
+import static org.ubercraft.sucre.common.ExceptionUtil.asUnchecked;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * A reflector being built by one thread, for caches to hold in place of the reflector until it is done. Other threads
+ * asking for the same type wait for it, so it's built once, but without the cache holding a lock while it's built: the
+ * reflector's factory may get other reflectors from the same cache, and a request for the type being built fails
+ * rather than deadlocks.
+ */
+final class PendingReflector {
+
+    private final Class<?> type;
+
+    private final FutureTask<Reflector> task;
+
+    private final Thread owner = Thread.currentThread();
+
+    PendingReflector(final Class<?> type, final Function<Class<?>, Reflector> creator) {
+        this.type = type;
+        this.task = new FutureTask<Reflector>(new Callable<Reflector>() {
+            @Override
+            public Reflector call() {
+                return creator.apply(type);
+            }
+        });
+    }
+
+    /**
+     * Builds the reflector, in the thread that created this. Throws whatever building it threw.
+     */
+    Reflector run() {
+        task.run();
+        return get();
+    }
+
+    /**
+     * Waits for the reflector to be built. Throws whatever building it threw.
+     */
+    Reflector get() {
+        if (owner == Thread.currentThread() && !task.isDone()) {
+            throw new ReflectException("recursive reflector creation for type: " + type.getName());
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                }
+                catch (InterruptedException e) {
+                    // the reflector is wanted regardless, so keep waiting and re-assert the interrupt after
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    throw asUnchecked(e.getCause());
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a bulk pre-cache: how long each type took to reflect, and which types failed.
+ */
+public final class PreCacheReport {
+
+    private final Map<Class<?>, Long> times;
+
+    private final Map<Class<?>, Throwable> failures;
+
+    private final long wallTime;
+
+    PreCacheReport(Map<Class<?>, Long> times, Map<Class<?>, Throwable> failures, long wallTime) {
+        this.times = Collections.unmodifiableMap(times);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.wallTime = wallTime;
+    }
+
+    /**
+     * Gets the time taken to pre-cache each type (whether it succeeded or failed), in nanoseconds.
+     */
+    public Map<Class<?>, Long> getTimes() {
+        return times;
+    }
+
+    /**
+     * Gets the failure for each type that could not be pre-cached.
+     */
+    public Map<Class<?>, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    public int getTypeCount() {
+        return times.size();
+    }
+
+    /**
+     * Gets the sum of the times taken by each type, in nanoseconds.
+     */
+    public long getTotalTime() {
+        long totalTime = 0L;
+        for (Long time : times.values()) {
+            totalTime += time;
+        }
+        return totalTime;
+    }
+
+    /**
+     * Gets the elapsed time for the whole pre-cache, in nanoseconds.
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PreCacheReport[types=" + times.size() + ", failures=" + failures.size() + ", totalTime=" + getTotalTime() + "ns, wallTime=" + wallTime + "ns]";
+    }
+}
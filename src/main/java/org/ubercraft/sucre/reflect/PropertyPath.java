@@ -0,0 +1,299 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled, dotted and indexed, property path (e.g. <code>"a.b[2].c"</code>) over a root type. The path is parsed
+ * once, and each property resolved to its accessor against the property's declared type where possible; otherwise
+ * (e.g. for list elements) against the runtime type, through a per-step cache of the last type seen.
+ * <p>
+ * Evaluation short-circuits to null on a null property, or an index that is out of range. Instances are obtained with
+ * {@link Reflect#getPropertyPath(Class, String)}, which caches them per root type and path, and are safe to share
+ * between threads.
+ */
+public final class PropertyPath {
+
+    private final Class<?> rootType;
+
+    private final String path;
+
+    private final Step[] steps;
+
+    private final Class<?> type;
+
+    // the types whose reflectors the property steps were resolved against (null for a step resolved at runtime), and
+    // the reflect instance's uncache count when they were last known to be current; used by Reflect to recompile
+    final Class<?>[] reflectedTypes;
+    volatile long validatedAt;
+
+    PropertyPath(Reflect reflect, Class<?> rootType, String path, long unCacheCount) {
+        this.rootType = rootType;
+        this.path = path;
+        this.validatedAt = unCacheCount;
+
+        List<Step> steps = new ArrayList<Step>();
+        List<Class<?>> reflectedTypes = new ArrayList<Class<?>>();
+        Class<?> type = rootType;
+        for (Object segment : parse(path)) {
+            Step step;
+            if (segment instanceof String) {
+                step = propertyStep(reflect, type, (String)segment);
+                reflectedTypes.add((step instanceof AccessorStep) ? type : null);
+            }
+            else {
+                step = indexStep(type, (Integer)segment);
+            }
+            steps.add(step);
+            type = step.type;
+        }
+        this.steps = steps.toArray(new Step[steps.size()]);
+        this.type = type;
+        this.reflectedTypes = reflectedTypes.toArray(new Class<?>[reflectedTypes.size()]);
+    }
+
+    public Class<?> getRootType() {
+        return rootType;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the declared type of the value at the end of the path, or <code>Object</code> where that is only known at
+     * runtime.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Evaluates the path against the given root object, returning null if the root, or any value along the path, is
+     * null, or if any index is out of range.
+     */
+    public Object get(Object root) {
+        Object value = root;
+        Step[] steps = this.steps;
+        for (int i = 0; i < steps.length && value != null; i++) {
+            value = steps[i].apply(value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return rootType.getName() + ":" + path;
+    }
+
+    // parses the path into property names (strings) and indexes (integers)
+    private static List<Object> parse(String path) {
+        List<Object> segments = new ArrayList<Object>();
+        int length = path.length();
+        int i = 0;
+        while (i < length) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) {
+                    throw new ReflectException("invalid property path: '" + path + "' (unclosed index at " + i + ")");
+                }
+                try {
+                    int index = Integer.parseInt(path.substring(i + 1, end).trim());
+                    if (index < 0) {
+                        throw new NumberFormatException();
+                    }
+                    segments.add(index);
+                }
+                catch (NumberFormatException e) {
+                    throw new ReflectException("invalid property path: '" + path + "' (bad index at " + i + ")");
+                }
+                i = end + 1;
+                if (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    throw new ReflectException("invalid property path: '" + path + "' (unexpected character at " + i + ")");
+                }
+            }
+            else {
+                if (c == '.') {
+                    if (segments.isEmpty()) {
+                        throw new ReflectException("invalid property path: '" + path + "' (empty property name at " + i + ")");
+                    }
+                    i++;
+                }
+                int start = i;
+                while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    i++;
+                }
+                if (i == start) {
+                    throw new ReflectException("invalid property path: '" + path + "' (empty property name at " + start + ")");
+                }
+                segments.add(path.substring(start, i));
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new ReflectException("invalid property path: '" + path + "'");
+        }
+        return segments;
+    }
+
+    private static Step propertyStep(Reflect reflect, Class<?> type, String name) {
+        if (!type.isPrimitive() && !type.isArray()) {
+            Accessor accessor = reflect.getReflector(type).getAccessor(name);
+            if (accessor != null) {
+                // also works for all subtypes of the declared type
+                return new AccessorStep(accessor);
+            }
+        }
+        return new RuntimeAccessorStep(reflect, name);
+    }
+
+    private static Step indexStep(Class<?> type, int index) {
+        if (type.isArray()) {
+            if (type.getComponentType().isPrimitive()) {
+                return new PrimitiveArrayIndexStep(type.getComponentType(), index);
+            }
+            return new ArrayIndexStep(type.getComponentType(), index);
+        }
+        if (List.class.isAssignableFrom(type)) {
+            return new ListIndexStep(index);
+        }
+        return new RuntimeIndexStep(index);
+    }
+
+    private static abstract class Step {
+
+        // declared type of the result
+        final Class<?> type;
+
+        Step(Class<?> type) {
+            this.type = type;
+        }
+
+        abstract Object apply(Object value);
+    }
+
+    private static class AccessorStep extends Step {
+
+        private final Accessor accessor;
+
+        AccessorStep(Accessor accessor) {
+            super(accessor.getType());
+            this.accessor = accessor;
+        }
+
+        @Override
+        Object apply(Object value) {
+            return accessor.access(value);
+        }
+    }
+
+    private static class RuntimeAccessorStep extends Step {
+
+        private final Reflect reflect;
+
+        private final String name;
+
+        // last runtime type seen, and its accessor (immutable, so safely shared between threads)
+        private CachedAccessor cached = null;
+
+        RuntimeAccessorStep(Reflect reflect, String name) {
+            super(Object.class);
+            this.reflect = reflect;
+            this.name = name;
+        }
+
+        @Override
+        Object apply(Object value) {
+            CachedAccessor cached = this.cached;
+            if (cached == null || cached.type != value.getClass()) {
+                Accessor accessor = reflect.getReflector(value.getClass()).getAccessor(name);
+                if (accessor == null) {
+                    throw new ReflectException("no accessor for property: '" + name + "' on type: " + value.getClass().getName());
+                }
+                this.cached = cached = new CachedAccessor(value.getClass(), accessor);
+            }
+            return cached.accessor.access(value);
+        }
+    }
+
+    private static final class CachedAccessor {
+
+        final Class<?> type;
+        final Accessor accessor;
+
+        CachedAccessor(Class<?> type, Accessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+
+    private static class ArrayIndexStep extends Step {
+
+        private final int index;
+
+        ArrayIndexStep(Class<?> type, int index) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Object apply(Object value) {
+            Object[] array = (Object[])value;
+            return (index < array.length) ? array[index] : null;
+        }
+    }
+
+    private static class PrimitiveArrayIndexStep extends Step {
+
+        private final int index;
+
+        PrimitiveArrayIndexStep(Class<?> type, int index) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Object apply(Object value) {
+            return (index < Array.getLength(value)) ? Array.get(value, index) : null;
+        }
+    }
+
+    private static class ListIndexStep extends Step {
+
+        private final int index;
+
+        ListIndexStep(int index) {
+            super(Object.class);
+            this.index = index;
+        }
+
+        @Override
+        Object apply(Object value) {
+            List<?> list = (List<?>)value;
+            return (index < list.size()) ? list.get(index) : null;
+        }
+    }
+
+    private static class RuntimeIndexStep extends Step {
+
+        private final int index;
+
+        RuntimeIndexStep(int index) {
+            super(Object.class);
+            this.index = index;
+        }
+
+        @Override
+        Object apply(Object value) {
+            if (value instanceof List) {
+                List<?> list = (List<?>)value;
+                return (index < list.size()) ? list.get(index) : null;
+            }
+            if (value.getClass().isArray()) {
+                return (index < Array.getLength(value)) ? Array.get(value, index) : null;
+            }
+            throw new ReflectException("cannot index type: " + value.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Package-private, immutable holder of a type's accessors and mutators, in dense arrays indexed by slot.
+ */
+final class PropertySlots {
+
+    final String[] names;
+    final Accessor[] accessors;
+    final Mutator[] mutators;
+
+    final Map<String, Integer> slots;
+
+    // non-null accessors and mutators, in slot order
+    final List<Accessor> accessorList;
+    final List<Mutator> mutatorList;
+
+    /**
+     * Assigns slots to the given property names, in iteration order.
+     */
+    PropertySlots(Collection<String> names, Map<String, ? extends Accessor> accessors, Map<String, ? extends Mutator> mutators) {
+        int count = names.size();
+        this.names = names.toArray(new String[count]);
+        this.accessors = new Accessor[count];
+        this.mutators = new Mutator[count];
+        this.slots = new HashMap<String, Integer>();
+        List<Accessor> accessorList = new ArrayList<Accessor>(accessors.size());
+        List<Mutator> mutatorList = new ArrayList<Mutator>(mutators.size());
+        for (int slot = 0; slot < count; slot++) {
+            String name = this.names[slot];
+            this.slots.put(name, slot);
+            Accessor accessor = accessors.get(name);
+            if (accessor != null) {
+                this.accessors[slot] = accessor;
+                accessorList.add(accessor);
+            }
+            Mutator mutator = mutators.get(name);
+            if (mutator != null) {
+                this.mutators[slot] = mutator;
+                mutatorList.add(mutator);
+            }
+        }
+        this.accessorList = Collections.unmodifiableList(accessorList);
+        this.mutatorList = Collections.unmodifiableList(mutatorList);
+    }
+}
@@ -1,9 +1,21 @@
 package org.ubercraft.sucre.reflect;
 
 import static org.ubercraft.sucre.common.AssertUtil.notNull;
+import static org.ubercraft.sucre.common.ReflectionUtil.findClasses;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
  * Main entry point to get and/or register reflector factories and reflectors by type.
@@ -15,22 +27,66 @@ public class Reflect {
      */
     public static final Reflect METHODS = new Reflect(MethodReflectorFactory.class);
 
+    /**
+     * A shared instance for method-based access, using bound method handles rather than <code>Method.invoke</code>.
+     */
+    public static final Reflect METHOD_HANDLES = new Reflect(MethodHandleReflectorFactory.class);
+
     /**
      * A shared instance for field-based access.
      */
     public static final Reflect FIELDS = new Reflect(FieldReflectorFactory.class);
 
+    /**
+     * A shared instance for field-based access, using var handles with plain memory ordering.
+     */
+    public static final Reflect VAR_HANDLES = new Reflect(VarHandleFieldReflectorFactory.class);
+
     // default reflector factory class, for when there is no specific factory set for a given type.
     private final Class<? extends ReflectorFactory> defaultFactoryClass;
 
     // maps type to reflector factory type
     private final Map<Class<?>, Class<? extends ReflectorFactory>> factoryMappings = new ConcurrentHashMap<Class<?>, Class<? extends ReflectorFactory>>();
 
-    // caches reflector factory instances per type
-    private final Map<Class<?>, ReflectorFactory> factories = new ConcurrentHashMap<Class<?>, ReflectorFactory>();
+    // caches reflector factory instances per factory type (keyed by factory rather than reflected type, so reflected
+    // types aren't held here)
+    private final ConcurrentMap<Class<? extends ReflectorFactory>, ReflectorFactory> factories = new ConcurrentHashMap<Class<? extends ReflectorFactory>, ReflectorFactory>();
 
     // caches reflector instances per type
-    private final Map<Class<?>, Reflector> reflectorCache = new ConcurrentHashMap<Class<?>, Reflector>();
+    private final ReflectorCache reflectorCache;
+
+    // caches compiled property paths per root type, then path (replaced, rather than emptied, to clear)
+    private volatile ClassValue<ConcurrentMap<String, PropertyPath>> propertyPaths = newPropertyPaths();
+
+    // counts calls to unCache, and records the count at which each type was last uncached, so that cached property
+    // paths through an uncached type are compiled again; both written under the lock
+    private final Object unCacheLock = new Object();
+    private volatile long unCacheCount = 0L;
+    private final ClassValue<AtomicLong> unCachedAt = new ClassValue<AtomicLong>() {
+        @Override
+        protected AtomicLong computeValue(Class<?> type) {
+            return new AtomicLong();
+        }
+    };
+
+    // cache statistics (striped, so counting requests stays uncontended); hits are requests less misses
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder buildTime = new LongAdder();
+
+    // creates factories and reflectors on a cache miss; each runs at most once per key, while other threads wait
+    private final Function<Class<? extends ReflectorFactory>, ReflectorFactory> factoryCreator = new Function<Class<? extends ReflectorFactory>, ReflectorFactory>() {
+        @Override
+        public ReflectorFactory apply(Class<? extends ReflectorFactory> clazz) {
+            return createFactory(clazz);
+        }
+    };
+    private final Function<Class<?>, Reflector> reflectorCreator = new Function<Class<?>, Reflector>() {
+        @Override
+        public Reflector apply(Class<?> type) {
+            return createReflector(type);
+        }
+    };
 
     /**
      * Create a new instance, defaulting to the built-in method reflection factory.
@@ -43,21 +99,32 @@ public class Reflect {
      * Create a new instance with the given default reflector factory type.
      */
     public Reflect(Class<? extends ReflectorFactory> defaultFactoryClass) {
-        this.defaultFactoryClass = defaultFactoryClass;
+        this(defaultFactoryClass, new DefaultReflectorCache());
+    }
+
+    /**
+     * Create a new instance with the given default reflector factory type, caching reflectors in the given cache (e.g. a
+     * {@link ClassValueReflectorCache}, so that cached types don't pin their class loaders).
+     */
+    public Reflect(Class<? extends ReflectorFactory> defaultFactoryClass, ReflectorCache reflectorCache) {
+        this.defaultFactoryClass = notNull(defaultFactoryClass, "default factory class cannot be null");
+        this.reflectorCache = notNull(reflectorCache, "reflector cache cannot be null");
     }
 
     /**
-     * Set reflector factory class for a type (pass null factory class to unset).
+     * Set reflector factory class for a type (pass null factory class to unset). Any reflector already cached for the type
+     * is dropped, so the next request gets one from the new factory.
      */
     public void setReflectorFactoryClass(Class<?> type, Class<? extends ReflectorFactory> clazz) {
         notNull(type, "type cannot be null");
 
-        if (type != null) {
+        if (clazz != null) {
             factoryMappings.put(type, clazz);
         }
         else {
             factoryMappings.remove(type);
         }
+        unCache(type);
     }
 
     /**
@@ -79,10 +146,90 @@ public class Reflect {
     }
 
     /**
-     * Removes any cached reflector for the given type.
+     * Pre-caches the reflectors for all the given types in parallel, on the common fork-join pool.
+     */
+    public PreCacheReport preCacheAll(Collection<Class<?>> types) {
+        return preCacheAll(types, false, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Pre-caches the reflectors for all the given types in parallel, on the given fork-join pool, optionally also
+     * resolving the pairing of each accessor with its mutator. Failures are reported per type, rather than thrown.
+     */
+    public PreCacheReport preCacheAll(Collection<Class<?>> types, final boolean resolvePairs, ForkJoinPool pool) {
+        notNull(types, "types cannot be null");
+        notNull(pool, "pool cannot be null");
+
+        final Map<Class<?>, Long> times = new ConcurrentHashMap<Class<?>, Long>();
+        final Map<Class<?>, Throwable> failures = new ConcurrentHashMap<Class<?>, Throwable>();
+        long start = System.nanoTime();
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(types.size());
+        for (final Class<?> type : new LinkedHashSet<Class<?>>(types)) {
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        preCache(type);
+                        if (resolvePairs) {
+                            resolvePairs(getReflector(type));
+                        }
+                    }
+                    catch (Exception e) {
+                        failures.put(type, e);
+                    }
+                    catch (LinkageError e) {
+                        // e.g. types found by a package scan that can't be linked
+                        failures.put(type, e);
+                    }
+                    finally {
+                        times.put(type, System.nanoTime() - start);
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        return new PreCacheReport(times, failures, System.nanoTime() - start);
+    }
+
+    /**
+     * Pre-caches the reflectors for all the top-level and nested classes found in the given package (and optionally its
+     * sub-packages), as seen by the given class loader, in parallel on the common fork-join pool.
+     */
+    public PreCacheReport preCachePackage(String packageName, ClassLoader loader, boolean recursive, boolean resolvePairs) {
+        try {
+            return preCacheAll(findClasses(packageName, loader, recursive), resolvePairs, ForkJoinPool.commonPool());
+        }
+        catch (IOException e) {
+            throw new ReflectException("failed to scan package: " + packageName, e);
+        }
+    }
+
+    private static void resolvePairs(Reflector reflector) {
+        for (Accessor accessor : reflector.getAccessors()) {
+            accessor.isPaired();
+        }
+        for (Mutator mutator : reflector.getMutators()) {
+            mutator.isPaired();
+        }
+    }
+
+    /**
+     * Removes any cached reflector for the given type, and any compiled property paths that pass through it. Paths
+     * already obtained keep the reflectors they were compiled with, so should be got again.
      */
     public void unCache(Class<?> type) {
+        notNull(type, "type cannot be null");
         reflectorCache.remove(type);
+        propertyPaths.remove(type);
+        synchronized (unCacheLock) {
+            unCachedAt.get(type).set(unCacheCount + 1);
+            unCacheCount++;
+        }
     }
 
     /**
@@ -90,41 +237,77 @@ public class Reflect {
      */
     public void clearCache() {
         reflectorCache.clear();
+        propertyPaths = newPropertyPaths();
     }
 
     /**
-     * Gets the reflector for a type. Hits the cache first to avoid re-creating the reflector everytime.
+     * Gets the compiled property path (e.g. <code>"a.b[2].c"</code>) for the given root type. Paths are compiled once,
+     * and cached per root type and path.
      */
-    public Reflector getReflector(Class<?> type) {
-        notNull(type, "type cannot be null");
+    public PropertyPath getPropertyPath(Class<?> rootType, String path) {
+        notNull(rootType, "root type cannot be null");
+        notNull(path, "path cannot be null");
 
-        try {
-            // check cache
-            Reflector reflector = (Reflector)reflectorCache.get(type);
-            if (reflector != null) {
-                return reflector;
+        ConcurrentMap<String, PropertyPath> paths = propertyPaths.get(rootType);
+        for (;;) {
+            PropertyPath propertyPath = paths.get(path);
+            if (propertyPath != null && !isStale(propertyPath)) {
+                return propertyPath;
+            }
+            PropertyPath compiled = new PropertyPath(this, rootType, path, unCacheCount);
+            if (propertyPath == null ? paths.putIfAbsent(path, compiled) == null : paths.replace(path, propertyPath, compiled)) {
+                return compiled;
             }
+            // raced with another thread, so look again
+        }
+    }
 
-            // look up factory
-            ReflectorFactory factory = (ReflectorFactory)factories.get(type);
-            if (factory == null) {
-                // get factory class
-                Class<?> clazz = (Class<?>)factoryMappings.get(type);
-                if (clazz == null) {
-                    clazz = defaultFactoryClass;
+    // whether a type the path was compiled against has been uncached since, counting a step resolved at runtime as
+    // against every type
+    private boolean isStale(PropertyPath propertyPath) {
+        if (propertyPath.validatedAt == unCacheCount) {
+            return false;
+        }
+        synchronized (unCacheLock) {
+            for (Class<?> type : propertyPath.reflectedTypes) {
+                if (type == null || unCachedAt.get(type).get() > propertyPath.validatedAt) {
+                    return true;
                 }
+            }
+            propertyPath.validatedAt = unCacheCount;
+            return false;
+        }
+    }
 
-                // create and cache factory
-                factory = (ReflectorFactory)clazz.newInstance();
-                factories.put(type, factory);
+    private static ClassValue<ConcurrentMap<String, PropertyPath>> newPropertyPaths() {
+        return new ClassValue<ConcurrentMap<String, PropertyPath>>() {
+            @Override
+            protected ConcurrentMap<String, PropertyPath> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<String, PropertyPath>();
             }
+        };
+    }
+
+    /**
+     * Gets a snapshot of the reflector cache statistics.
+     */
+    public ReflectStats getStats() {
+        long misses = missCount.sum();
+        long hits = Math.max(requestCount.sum() - misses, 0L);
+        return new ReflectStats(hits, misses, buildTime.sum(), reflectorCache.getEvictionCount());
+    }
 
-            // create and cache reflector
-            reflector = factory.createReflector(type);
-            reflectorCache.put(type, reflector);
+    /**
+     * Gets the reflector for a type. Hits the cache first to avoid re-creating the reflector everytime. On a cache miss
+     * the reflector is created once, even when many threads ask for the same type at the same time.
+     */
+    public Reflector getReflector(Class<?> type) {
+        notNull(type, "type cannot be null");
+        requestCount.increment();
 
-            // return reflector
-            return reflector;
+        try {
+            // check cache, creating and caching the reflector on a miss (or waiting for another thread doing so)
+            return reflectorCache.get(type, reflectorCreator);
         }
         catch (ReflectException e) {
             throw e;
@@ -133,4 +316,42 @@ public class Reflect {
             throw new ReflectException("failed to create reflector for type: " + type.getName(), e);
         }
     }
+
+    private Reflector createReflector(Class<?> type) {
+        long start = System.nanoTime();
+        try {
+            return buildReflector(type);
+        }
+        finally {
+            missCount.increment();
+            buildTime.add(System.nanoTime() - start);
+        }
+    }
+
+    private Reflector buildReflector(Class<?> type) {
+        // get factory class
+        Class<? extends ReflectorFactory> clazz = factoryMappings.get(type);
+        if (clazz == null) {
+            // a reflector generated at compile time is method-based, so only stands in for the method factory
+            if (defaultFactoryClass == MethodReflectorFactory.class) {
+                Reflector reflector = CompiledReflector.createReflector(type);
+                if (reflector != null) {
+                    return reflector;
+                }
+            }
+            clazz = defaultFactoryClass;
+        }
+
+        // look up or create factory, then create reflector
+        return factories.computeIfAbsent(clazz, factoryCreator).createReflector(type);
+    }
+
+    private ReflectorFactory createFactory(Class<? extends ReflectorFactory> clazz) {
+        try {
+            return clazz.getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw new ReflectException("failed to create reflector factory: " + clazz.getName(), e);
+        }
+    }
 }
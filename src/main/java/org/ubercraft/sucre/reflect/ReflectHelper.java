@@ -1,10 +1,33 @@
 package org.ubercraft.sucre.reflect;
 
+import static org.ubercraft.sucre.internal.ClassFileWriter.wrapperFor;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
 /**
  * Package-private static helper functions.
  */
 class ReflectHelper {
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
     static String accessorMethodNameToFieldName(String accessorName) {
         String fieldName = null;
         if (accessorName.startsWith("get")) {
@@ -35,4 +58,404 @@ class ReflectHelper {
         }
         return fieldName;
     }
+
+    /*
+     * Every function returned here follows the contract of Method.invoke as used by the reflective functions: anything
+     * thrown by the target method is rethrown as a RuntimeException wrapping an InvocationTargetException.
+     */
+
+    /**
+     * Wraps an accessor method in a function that calls it through plain reflection.
+     */
+    static Function<Object, Object> reflectiveAccessor(final Method method) {
+        return new Function<Object, Object>() {
+            @Override
+            public Object apply(Object object) {
+                try {
+                    return method.invoke(object, (Object[])null);
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a mutator method in a consumer that calls it through plain reflection.
+     */
+    static BiConsumer<Object, Object> reflectiveMutator(final Method method) {
+        return new BiConsumer<Object, Object>() {
+            @Override
+            public void accept(Object object, Object value) {
+                try {
+                    method.invoke(object, value);
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Binds an accessor method to a function, either generated by the lambda meta-factory or wrapping a method handle.
+     * Returns null if the method cannot be bound, in which case the caller should fall back to plain reflection.
+     */
+    static Function<Object, Object> bindAccessor(final Method method) {
+        final Class<?> receiverType = receiverType(method);
+        MethodHandle handle = unreflect(method);
+        if (handle == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final Function<Object, Object> function = metafactory(method, handle, Function.class, "apply", //
+                MethodType.methodType(Object.class, Object.class), MethodType.methodType(method.getReturnType(), method.getDeclaringClass()).wrap());
+        if (function != null) {
+            return new Function<Object, Object>() {
+                @Override
+                public Object apply(Object object) {
+                    checkReceiver(receiverType, object);
+                    try {
+                        return function.apply(object);
+                    }
+                    catch (Throwable th) {
+                        throw invocationFailure(th);
+                    }
+                }
+            };
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        final MethodHandle accessor = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return new Function<Object, Object>() {
+            @Override
+            public Object apply(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return (Object)accessor.invokeExact(object);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    /**
+     * Binds a mutator method to a consumer, either generated by the lambda meta-factory or wrapping a method handle.
+     * Returns null if the method cannot be bound, in which case the caller should fall back to plain reflection.
+     */
+    static BiConsumer<Object, Object> bindMutator(final Method method) {
+        final Class<?> receiverType = receiverType(method);
+        final Class<?> parameterType = method.getParameterTypes()[0];
+        MethodHandle handle = unreflect(method);
+        if (handle == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final BiConsumer<Object, Object> consumer = metafactory(method, handle, BiConsumer.class, "accept", //
+                MethodType.methodType(void.class, Object.class, Object.class), mutatorType(method).wrap().changeReturnType(void.class));
+        if (consumer != null) {
+            return new BiConsumer<Object, Object>() {
+                @Override
+                public void accept(Object object, Object value) {
+                    checkReceiver(receiverType, object);
+                    checkArgument(parameterType, value);
+                    try {
+                        consumer.accept(object, value);
+                    }
+                    catch (Throwable th) {
+                        throw invocationFailure(th);
+                    }
+                }
+            };
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        final MethodHandle mutator = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return new BiConsumer<Object, Object>() {
+            @Override
+            public void accept(Object object, Object value) {
+                checkReceiver(receiverType, object);
+                checkArgument(parameterType, value);
+                try {
+                    mutator.invokeExact(object, value);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    /*
+     * Primitive specializations follow. These only bind through the lambda meta-factory, returning null otherwise, in
+     * which case the caller should bind the generic accessor or mutator instead.
+     */
+
+    static ToIntFunction<Object> bindIntAccessor(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ToIntFunction<Object> function = metafactory(method, unreflect(method), ToIntFunction.class, "applyAsInt", //
+                MethodType.methodType(int.class, Object.class), MethodType.methodType(int.class, method.getDeclaringClass()));
+        if (function == null) {
+            return null;
+        }
+        return new ToIntFunction<Object>() {
+            @Override
+            public int applyAsInt(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return function.applyAsInt(object);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static ToLongFunction<Object> bindLongAccessor(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ToLongFunction<Object> function = metafactory(method, unreflect(method), ToLongFunction.class, "applyAsLong", //
+                MethodType.methodType(long.class, Object.class), MethodType.methodType(long.class, method.getDeclaringClass()));
+        if (function == null) {
+            return null;
+        }
+        return new ToLongFunction<Object>() {
+            @Override
+            public long applyAsLong(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return function.applyAsLong(object);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static ToDoubleFunction<Object> bindDoubleAccessor(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ToDoubleFunction<Object> function = metafactory(method, unreflect(method), ToDoubleFunction.class, "applyAsDouble", //
+                MethodType.methodType(double.class, Object.class), MethodType.methodType(double.class, method.getDeclaringClass()));
+        if (function == null) {
+            return null;
+        }
+        return new ToDoubleFunction<Object>() {
+            @Override
+            public double applyAsDouble(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return function.applyAsDouble(object);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static Predicate<Object> bindBooleanAccessor(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final Predicate<Object> predicate = metafactory(method, unreflect(method), Predicate.class, "test", //
+                MethodType.methodType(boolean.class, Object.class), MethodType.methodType(boolean.class, method.getDeclaringClass()));
+        if (predicate == null) {
+            return null;
+        }
+        return new Predicate<Object>() {
+            @Override
+            public boolean test(Object object) {
+                checkReceiver(receiverType, object);
+                try {
+                    return predicate.test(object);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static ObjIntConsumer<Object> bindIntMutator(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ObjIntConsumer<Object> consumer = metafactory(method, unreflect(method), ObjIntConsumer.class, "accept", //
+                MethodType.methodType(void.class, Object.class, int.class), mutatorType(method));
+        if (consumer == null) {
+            return null;
+        }
+        return new ObjIntConsumer<Object>() {
+            @Override
+            public void accept(Object object, int value) {
+                checkReceiver(receiverType, object);
+                try {
+                    consumer.accept(object, value);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static ObjLongConsumer<Object> bindLongMutator(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ObjLongConsumer<Object> consumer = metafactory(method, unreflect(method), ObjLongConsumer.class, "accept", //
+                MethodType.methodType(void.class, Object.class, long.class), mutatorType(method));
+        if (consumer == null) {
+            return null;
+        }
+        return new ObjLongConsumer<Object>() {
+            @Override
+            public void accept(Object object, long value) {
+                checkReceiver(receiverType, object);
+                try {
+                    consumer.accept(object, value);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    static ObjDoubleConsumer<Object> bindDoubleMutator(Method method) {
+        final Class<?> receiverType = receiverType(method);
+        @SuppressWarnings("unchecked")
+        final ObjDoubleConsumer<Object> consumer = metafactory(method, unreflect(method), ObjDoubleConsumer.class, "accept", //
+                MethodType.methodType(void.class, Object.class, double.class), mutatorType(method));
+        if (consumer == null) {
+            return null;
+        }
+        return new ObjDoubleConsumer<Object>() {
+            @Override
+            public void accept(Object object, double value) {
+                checkReceiver(receiverType, object);
+                try {
+                    consumer.accept(object, value);
+                }
+                catch (Throwable th) {
+                    throw invocationFailure(th);
+                }
+            }
+        };
+    }
+
+    // matches what the reflective functions throw when Method.invoke fails in the target method
+    static RuntimeException invocationFailure(Throwable th) {
+        return new RuntimeException(new InvocationTargetException(th));
+    }
+
+    // the type a method's receiver must be an instance of, or null for a static method, which ignores its receiver
+    static Class<?> receiverType(Method method) {
+        return Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass();
+    }
+
+    // fails for a bad receiver as Method.invoke does, before the call, so that it isn't taken for a failure in the method
+    static void checkReceiver(Class<?> receiverType, Object object) {
+        if (receiverType != null) {
+            if (object == null) {
+                throw new NullPointerException();
+            }
+            if (!receiverType.isInstance(object)) {
+                throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+        }
+    }
+
+    // fails for a bad argument as Method.invoke does, except that primitive arguments are never widened
+    static void checkArgument(Class<?> parameterType, Object value) {
+        if (parameterType.isPrimitive() ? !wrapperFor(parameterType).isInstance(value) : (value != null && !parameterType.isInstance(value))) {
+            throw new IllegalArgumentException("argument type mismatch");
+        }
+    }
+
+    private static MethodType mutatorType(Method method) {
+        return MethodType.methodType(void.class, method.getDeclaringClass(), method.getParameterTypes()[0]);
+    }
+
+    // spins a lambda implementing the given functional interface, or returns null if the method isn't eligible
+    private static <T> T metafactory(Method method, MethodHandle handle, Class<T> functionalInterface, String name, MethodType samType,
+            MethodType instantiatedType) {
+        if (handle == null || !isLambdaEligible(method)) {
+            return null;
+        }
+        CallSite site;
+        try {
+            site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(functionalInterface), //
+                    samType, handle, instantiatedType);
+        }
+        catch (LambdaConversionException e) {
+            return null;
+        }
+        try {
+            return functionalInterface.cast(site.getTarget().invoke());
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Error e) {
+            throw e;
+        }
+        catch (Throwable th) {
+            throw new ReflectException("failed to bind method: '" + method + "'", th);
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return LOOKUP.unreflect(method);
+        }
+        catch (IllegalAccessException e) {
+            // try again, suppressing access checks
+        }
+        try {
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    // generated lambda classes live alongside this class, so the target must be publicly reachable from here
+    private static boolean isLambdaEligible(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers()) //
+                || !Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+        return isVisible(declaringClass) && isVisible(method.getReturnType()) //
+                && (method.getParameterTypes().length == 0 || isVisible(method.getParameterTypes()[0]));
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, ReflectHelper.class.getClassLoader()) == type;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
 }
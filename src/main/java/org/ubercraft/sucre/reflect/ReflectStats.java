@@ -0,0 +1,65 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * An immutable snapshot of the reflector cache statistics of a {@link Reflect} instance.
+ */
+public final class ReflectStats {
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long totalBuildTime;
+
+    private final long evictionCount;
+
+    public ReflectStats(long hitCount, long missCount, long totalBuildTime, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.totalBuildTime = totalBuildTime;
+        this.evictionCount = evictionCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Gets the ratio of hits to requests, or 1.0 if there have been no requests.
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0D : (double)hitCount / requestCount;
+    }
+
+    /**
+     * Gets the total time spent building reflectors on a miss, in nanoseconds.
+     */
+    public long getTotalBuildTime() {
+        return totalBuildTime;
+    }
+
+    /**
+     * Gets the average time spent building a reflector on a miss, in nanoseconds.
+     */
+    public double getAverageBuildTime() {
+        return missCount == 0 ? 0.0D : (double)totalBuildTime / missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ReflectStats[hits=" + hitCount + ", misses=" + missCount + ", totalBuildTime=" + totalBuildTime + "ns, evictions=" + evictionCount + "]";
+    }
+}
@@ -0,0 +1,21 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or interface for which a {@link CompiledReflector} is generated at compile time, by the
+ * <code>org.ubercraft.sucre.reflect.processor.ReflectorProcessor</code> annotation processor, which must be named to
+ * run (it is not registered as a service, to stay out of other builds). A {@link Reflect} whose
+ * default factory is the {@link MethodReflectorFactory} finds and prefers the generated reflector, unless a reflector
+ * factory has been explicitly set for the type; other defaults (e.g. field-based) ignore it.
+ * <p>
+ * The annotation is not inherited: subclasses are reflected as usual, unless they are marked too.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({
+    ElementType.TYPE
+})
+public @interface Reflectable {}
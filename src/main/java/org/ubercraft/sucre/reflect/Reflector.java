@@ -1,7 +1,15 @@
 package org.ubercraft.sucre.reflect;
 
+import java.util.Arrays;
+
 /**
  * This interface represents a set of accessors and mutators for a class.
+ * <p>
+ * Each property (i.e. accessor and/or mutator name) is also assigned a slot: a dense, stable index from zero to
+ * <code>getSlotCount() - 1</code>. Resolve a name to its slot once with {@link #getSlot(String)}, then use the slot based
+ * methods in tight loops to avoid repeated name lookups. The slot based methods default to assigning slots in property
+ * name order, listed once per reflector, and resolving them through the name based methods; the reflectors created here
+ * override them with indexed lookups.
  */
 public interface Reflector {
 
@@ -17,6 +25,59 @@ public interface Reflector {
 
     Iterable<Mutator> getMutators();
 
+    // slots
+
+    default int getSlotCount() {
+        return ReflectorSlotNames.of(this).length;
+    }
+
+    /**
+     * Returns the slot for the given property name, or -1 if there is no such accessor or mutator.
+     */
+    default int getSlot(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int slot = Arrays.binarySearch(ReflectorSlotNames.of(this), name);
+        return (slot >= 0) ? slot : -1;
+    }
+
+    default String getSlotName(int slot) {
+        return ReflectorSlotNames.of(this)[slot];
+    }
+
+    /**
+     * Returns the accessor in the given slot, or null if the property has only a mutator.
+     */
+    default Accessor getAccessor(int slot) {
+        return getAccessor(getSlotName(slot));
+    }
+
+    /**
+     * Returns the mutator in the given slot, or null if the property has only an accessor.
+     */
+    default Mutator getMutator(int slot) {
+        return getMutator(getSlotName(slot));
+    }
+
+    default Object access(Object object, int slot) {
+        String name = getSlotName(slot);
+        Accessor accessor = getAccessor(name);
+        if (accessor == null) {
+            throw new ReflectException("no accessor for property: '" + name + "'");
+        }
+        return accessor.access(object);
+    }
+
+    default void mutate(Object object, int slot, Object value) {
+        String name = getSlotName(slot);
+        Mutator mutator = getMutator(name);
+        if (mutator == null) {
+            throw new ReflectException("no mutator for property: '" + name + "'");
+        }
+        mutator.mutate(object, value);
+    }
+
     // cache control
 
     void preCache() throws Exception;
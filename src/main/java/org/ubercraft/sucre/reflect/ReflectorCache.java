@@ -0,0 +1,25 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.function.Function;
+
+/**
+ * Implement this interface to provide a way of caching <code>Reflector</code> instances by type, for use by
+ * {@link Reflect}.
+ */
+public interface ReflectorCache {
+
+    /**
+     * Gets the cached reflector for the given type, creating it with the given function on a miss. Implementations
+     * should call the function at most once per type, even when many threads miss at the same time.
+     */
+    Reflector get(Class<?> type, Function<Class<?>, Reflector> creator);
+
+    void remove(Class<?> type);
+
+    void clear();
+
+    /**
+     * Gets the number of reflectors removed by the cache itself (not by {@link #remove(Class)} or {@link #clear()}).
+     */
+    long getEvictionCount();
+}
@@ -0,0 +1,12 @@
+package org.ubercraft.sucre.reflect;
+
+/**
+ * Index-based dispatch to a type's accessor and mutator methods. Implementations are generated, with a
+ * <code>switch</code> over the index calling each method directly.
+ */
+public interface ReflectorDispatcher {
+
+    Object access(Object object, int index);
+
+    void mutate(Object object, int index, Object value);
+}
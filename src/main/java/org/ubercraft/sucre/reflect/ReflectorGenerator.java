@@ -0,0 +1,187 @@
+package org.ubercraft.sucre.reflect;
+
+import static org.ubercraft.sucre.common.ReflectionUtil.isPubliclyAccessible;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_FINAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_PUBLIC;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ACC_SYNTHETIC;
+import static org.ubercraft.sucre.internal.ClassFileWriter.ATHROW;
+import static org.ubercraft.sucre.internal.ClassFileWriter.CHECKCAST;
+import static org.ubercraft.sucre.internal.ClassFileWriter.DUP;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKEINTERFACE;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKESPECIAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKESTATIC;
+import static org.ubercraft.sucre.internal.ClassFileWriter.INVOKEVIRTUAL;
+import static org.ubercraft.sucre.internal.ClassFileWriter.NEW;
+import static org.ubercraft.sucre.internal.ClassFileWriter.POP;
+import static org.ubercraft.sucre.internal.ClassFileWriter.internalName;
+import static org.ubercraft.sucre.internal.ClassFileWriter.methodDescriptor;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.ubercraft.sucre.internal.ClassFileWriter;
+import org.ubercraft.sucre.internal.ClassFileWriter.Code;
+import org.ubercraft.sucre.internal.ClassFileWriter.Label;
+
+/**
+ * Package-private generator of {@link ReflectorDispatcher} classes.
+ */
+class ReflectorGenerator {
+
+    /**
+     * Checks whether generated code, living in its own class loader, can link against the given type.
+     */
+    static boolean isAccessible(Class<?> type) {
+        return isPubliclyAccessible(type);
+    }
+
+    /**
+     * Checks whether the given accessor or mutator method of the given type can be called from generated code.
+     */
+    static boolean isDispatchable(Class<?> type, Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            // interface static methods need a newer class file version than is generated
+            Class<?> declaringClass = method.getDeclaringClass();
+            if (declaringClass.isInterface() || !isAccessible(declaringClass)) {
+                return false;
+            }
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isAccessible(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates and instantiates a dispatcher for the given accessor and mutator methods, which are dispatched by their
+     * index in the given arrays. Null entries are left undispatched.
+     */
+    static ReflectorDispatcher generate(Class<?> type, Method[] accessors, Method[] mutators) {
+        String className = dispatcherClassName(type);
+        ClassFileWriter cw = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, toInternalName(className), "java/lang/Object",
+                internalName(ReflectorDispatcher.class));
+
+        Code init = cw.addMethod(ACC_PUBLIC, "<init>", "()V");
+        init.load('L', 0).invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false).returnValue('V');
+
+        // access(Object, int): switch on index, call getter, box result
+        Code access = cw.addMethod(ACC_PUBLIC, "access", methodDescriptor(Object.class, Object.class, int.class));
+        Label accessDefault = new Label();
+        Label[] accessLabels = labels(accessors, accessDefault);
+        if (accessors.length > 0) {
+            access.load('I', 2).tableSwitch(0, accessDefault, accessLabels);
+        }
+        for (int i = 0; i < accessors.length; i++) {
+            Method method = accessors[i];
+            if (method == null) {
+                continue;
+            }
+            access.mark(accessLabels[i]);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                access.load('L', 1).typeInsn(CHECKCAST, internalName(type));
+            }
+            invoke(access, type, method);
+            access.box(method.getReturnType()).returnValue('L');
+        }
+        access.mark(accessDefault);
+        throwIndexOutOfBounds(access);
+
+        // mutate(Object, int, Object): switch on index, cast or unbox value, call setter
+        Code mutate = cw.addMethod(ACC_PUBLIC, "mutate", methodDescriptor(void.class, Object.class, int.class, Object.class));
+        Label mutateDefault = new Label();
+        Label[] mutateLabels = labels(mutators, mutateDefault);
+        if (mutators.length > 0) {
+            mutate.load('I', 2).tableSwitch(0, mutateDefault, mutateLabels);
+        }
+        for (int i = 0; i < mutators.length; i++) {
+            Method method = mutators[i];
+            if (method == null) {
+                continue;
+            }
+            mutate.mark(mutateLabels[i]);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                mutate.load('L', 1).typeInsn(CHECKCAST, internalName(type));
+            }
+            mutate.load('L', 3).unbox(method.getParameterTypes()[0]);
+            invoke(mutate, type, method);
+            if (method.getReturnType() != void.class) {
+                mutate.insn(POP);
+            }
+            mutate.returnValue('V');
+        }
+        mutate.mark(mutateDefault);
+        throwIndexOutOfBounds(mutate);
+
+        byte[] bytes = cw.toByteArray();
+        try {
+            Class<?> dispatcherClass = new DispatcherClassLoader(type.getClassLoader()).define(className, bytes);
+            return (ReflectorDispatcher)dispatcherClass.getConstructor().newInstance();
+        }
+        catch (Exception e) {
+            throw new ReflectException("failed to generate dispatcher for type: " + type.getName(), e);
+        }
+    }
+
+    private static String dispatcherClassName(Class<?> type) {
+        String name = type.getName() + "$$SucreDispatcher";
+        // classes cannot be defined in the java.* packages
+        return name.startsWith("java.") ? "sucre." + name : name;
+    }
+
+    private static String toInternalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static Label[] labels(Method[] methods, Label defaultLabel) {
+        Label[] labels = new Label[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            labels[i] = (methods[i] != null) ? new Label() : defaultLabel;
+        }
+        return labels;
+    }
+
+    // invoke through the reflected type rather than the declaring type, as javac does, so inherited public methods of
+    // non-public super-types can still be called
+    private static void invoke(Code code, Class<?> type, Method method) {
+        String descriptor = methodDescriptor(method.getReturnType(), method.getParameterTypes());
+        if (Modifier.isStatic(method.getModifiers())) {
+            Class<?> declaringClass = method.getDeclaringClass();
+            code.invoke(INVOKESTATIC, internalName(declaringClass), method.getName(), descriptor, false);
+        }
+        else if (type.isInterface()) {
+            code.invoke(INVOKEINTERFACE, internalName(type), method.getName(), descriptor, true);
+        }
+        else {
+            code.invoke(INVOKEVIRTUAL, internalName(type), method.getName(), descriptor, false);
+        }
+    }
+
+    private static void throwIndexOutOfBounds(Code code) {
+        String exception = internalName(IndexOutOfBoundsException.class);
+        code.typeInsn(NEW, exception).insn(DUP);
+        code.load('I', 2).invoke(INVOKESPECIAL, exception, "<init>", "(I)V", false);
+        code.insn(ATHROW);
+    }
+
+    // defines a single generated class, resolving the dispatcher interface to this library's copy
+    private static class DispatcherClassLoader extends ClassLoader {
+
+        DispatcherClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(ReflectorDispatcher.class.getName())) {
+                return ReflectorDispatcher.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.ubercraft.sucre.reflect;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * Package-private cache of slot names for reflectors relying on the default slot methods of {@link Reflector}, so that
+ * each reflector's properties are listed once rather than on every call. Weakly keyed, so reflectors aren't held here.
+ */
+final class ReflectorSlotNames {
+
+    private static final Map<Reflector, String[]> NAMES = Collections.synchronizedMap(new WeakHashMap<Reflector, String[]>());
+
+    private ReflectorSlotNames() {}
+
+    /**
+     * Gets the names of the given reflector's accessors and mutators, in name order.
+     */
+    static String[] of(Reflector reflector) {
+        String[] names = NAMES.get(reflector);
+        if (names == null) {
+            // a reflector's properties don't change, so a race just lists them twice
+            names = list(reflector);
+            NAMES.put(reflector, names);
+        }
+        return names;
+    }
+
+    private static String[] list(Reflector reflector) {
+        Set<String> names = new TreeSet<String>();
+        for (Accessor accessor : reflector.getAccessors()) {
+            names.add(accessor.getName());
+        }
+        for (Mutator mutator : reflector.getMutators()) {
+            names.add(mutator.getName());
+        }
+        return names.toArray(new String[names.size()]);
+    }
+}
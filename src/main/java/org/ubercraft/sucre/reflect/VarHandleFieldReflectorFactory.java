@@ -0,0 +1,49 @@
+package org.ubercraft.sucre.reflect;
+
+import static org.ubercraft.sucre.common.AssertUtil.notNull;
+
+/**
+ * This class reflects a class's accessors and its mutators using Java reflection on its fields, but reads and writes
+ * them through var handles using the configured {@link FieldAccessMode}. Accessors and mutators created by this factory
+ * implement {@link VarHandleReflector}, which provides non-boxing access to primitive fields.
+ */
+public class VarHandleFieldReflectorFactory extends FieldReflectorFactory {
+
+    public VarHandleFieldReflectorFactory() {
+        this(FieldAccessMode.PLAIN);
+    }
+
+    public VarHandleFieldReflectorFactory(FieldAccessMode accessMode) {
+        super(notNull(accessMode, "access mode cannot be null"));
+    }
+
+    /**
+     * Var handle field reflector factory using opaque access.
+     */
+    public static class Opaque extends VarHandleFieldReflectorFactory {
+
+        public Opaque() {
+            super(FieldAccessMode.OPAQUE);
+        }
+    }
+
+    /**
+     * Var handle field reflector factory using acquire/release access.
+     */
+    public static class AcquireRelease extends VarHandleFieldReflectorFactory {
+
+        public AcquireRelease() {
+            super(FieldAccessMode.ACQUIRE_RELEASE);
+        }
+    }
+
+    /**
+     * Var handle field reflector factory using volatile access.
+     */
+    public static class Volatile extends VarHandleFieldReflectorFactory {
+
+        public Volatile() {
+            super(FieldAccessMode.VOLATILE);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.ubercraft.sucre.reflect;
+
+import java.lang.invoke.VarHandle;
+
+public interface VarHandleReflector {
+
+    VarHandle getVarHandle();
+
+    FieldAccessMode getAccessMode();
+
+    // typed access, without boxing
+
+    int getInt(Object object);
+
+    long getLong(Object object);
+
+    double getDouble(Object object);
+
+    boolean getBoolean(Object object);
+
+    void setInt(Object object, int value);
+
+    void setLong(Object object, long value);
+
+    void setDouble(Object object, double value);
+
+    void setBoolean(Object object, boolean value);
+}
@@ -0,0 +1,351 @@
+package org.ubercraft.sucre.reflect.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+import org.ubercraft.sucre.reflect.CompiledReflector;
+import org.ubercraft.sucre.reflect.Reflectable;
+
+/**
+ * Generates a {@link CompiledReflector} for each {@link Reflectable} type, applying the same accessor and mutator rules
+ * as the method reflector factory to the type's public methods. The generated class is named for the type's binary name
+ * plus {@link CompiledReflector#CLASS_NAME_SUFFIX}, in the same package.
+ * <p>
+ * Since the generated reflector stands in for the method reflector factory's, a type it can't describe the same way
+ * fails compilation: a property with both a 'get' and an 'is' accessor, or overloaded mutators (of which the factory
+ * would use either), or with a type the generated reflector can't refer to.
+ * <p>
+ * The processor is not registered as a service, so it doesn't run in every build with Sucre on the class path. Name it
+ * to run it, e.g. with <code>javac -processor org.ubercraft.sucre.reflect.processor.ReflectorProcessor</code>, or in
+ * the <code>annotationProcessors</code> of the Maven compiler plugin.
+ */
+@SupportedAnnotationTypes("org.ubercraft.sucre.reflect.Reflectable")
+public class ReflectorProcessor extends AbstractProcessor {
+
+    public ReflectorProcessor() {}
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Reflectable.class)) {
+            if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+                error(element, "@Reflectable applies to classes and interfaces only");
+                continue;
+            }
+            TypeElement type = (TypeElement)element;
+            PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+            if (!isAccessible(type, packageElement)) {
+                error(element, "@Reflectable types cannot be private");
+                continue;
+            }
+            try {
+                generate(type, packageElement);
+            }
+            catch (IOException e) {
+                error(element, "failed to generate reflector: " + e);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, PackageElement packageElement) throws IOException {
+        Map<String, Property> properties = findProperties(type, packageElement);
+        if (properties == null) {
+            return;
+        }
+
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName.length() + 1)) + CompiledReflector.CLASS_NAME_SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile((packageName.length() == 0 ? "" : packageName + ".") + simpleName, type);
+        PrintWriter out = new PrintWriter(file.openWriter());
+        try {
+            if (packageName.length() != 0) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            if (processingEnv.getElementUtils().getTypeElement("javax.annotation.processing.Generated") != null) {
+                out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            }
+            out.println("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })");
+            out.println("public final class " + simpleName + " extends " + CompiledReflector.class.getName() + " {");
+            out.println();
+            out.println("    public " + simpleName + "() {");
+            out.println("        super(" + typeName + ".class,");
+            List<String> names = new ArrayList<String>();
+            List<String> accessorNames = new ArrayList<String>();
+            List<String> accessorTypes = new ArrayList<String>();
+            List<String> mutatorNames = new ArrayList<String>();
+            List<String> mutatorTypes = new ArrayList<String>();
+            for (Property property : properties.values()) {
+                names.add(quote(property.name));
+                accessorNames.add(property.accessor != null ? quote(property.accessor.getSimpleName().toString()) : "null");
+                accessorTypes.add(property.accessor != null ? typeName(property.accessorType) + ".class" : "null");
+                mutatorNames.add(property.mutator != null ? quote(property.mutator.getSimpleName().toString()) : "null");
+                mutatorTypes.add(property.mutator != null ? typeName(property.mutatorType) + ".class" : "null");
+            }
+            out.println("                new String[] { " + join(names) + " },");
+            out.println("                new String[] { " + join(accessorNames) + " },");
+            out.println("                new Class<?>[] { " + join(accessorTypes) + " },");
+            out.println("                new String[] { " + join(mutatorNames) + " },");
+            out.println("                new Class<?>[] { " + join(mutatorTypes) + " });");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object access(Object object, int slot) {");
+            out.println("        switch (slot) {");
+            int slot = 0;
+            for (Property property : properties.values()) {
+                if (property.accessor != null) {
+                    out.println("        case " + slot + ":");
+                    out.println("            return " + target(property.accessor, typeName) + "." + property.accessor.getSimpleName() + "();");
+                }
+                slot++;
+            }
+            out.println("        default:");
+            out.println("            return super.access(object, slot);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void mutate(Object object, int slot, Object value) {");
+            out.println("        switch (slot) {");
+            slot = 0;
+            for (Property property : properties.values()) {
+                if (property.mutator != null) {
+                    TypeMirror parameterType = property.mutatorType;
+                    String castName = parameterType.getKind().isPrimitive() ? boxedTypeName(parameterType) : typeName(parameterType);
+                    out.println("        case " + slot + ":");
+                    out.println("            " + target(property.mutator, typeName) + "." + property.mutator.getSimpleName() + "((" + castName + ")value);");
+                    out.println("            return;");
+                }
+                slot++;
+            }
+            out.println("        default:");
+            out.println("            super.mutate(object, slot, value);");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    // properties in name order, to match the slots of the method reflector factory; member types are as seen from the
+    // type, so a type variable of a generic supertype is resolved to its argument. Returns null, having reported errors,
+    // for properties the generated reflector can't describe as the method reflector factory would.
+    private Map<String, Property> findProperties(TypeElement type, PackageElement packageElement) {
+        Map<String, Property> properties = new TreeMap<String, Property>();
+        DeclaredType declaredType = (DeclaredType)type.asType();
+        boolean valid = true;
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            // public methods (static too, as returned by Class.getMethods()), not declared by Object
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) continue;
+            if (((TypeElement)method.getEnclosingElement()).getQualifiedName().contentEquals("java.lang.Object")) continue;
+
+            String methodName = method.getSimpleName().toString();
+            int parameterCount = method.getParameters().size();
+            boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+
+            ExecutableType methodType = (ExecutableType)processingEnv.getTypeUtils().asMemberOf(declaredType, method);
+
+            String accessorName = accessorMethodNameToFieldName(methodName);
+            if (accessorName != null && parameterCount == 0 && !isVoid) {
+                Property property = property(properties, accessorName);
+                if (property.accessor != null && property.accessor.getSimpleName().contentEquals(methodName)) {
+                    // the same method, inherited more than once
+                    continue;
+                }
+                if (property.accessor != null) {
+                    // the method reflector factory would use either
+                    error(method, "ambiguous accessors for property: '" + accessorName + "', both " + property.accessor.getSimpleName()
+                            + "() and " + methodName + "()");
+                    valid = false;
+                }
+                else if (!isAccessible(methodType.getReturnType(), packageElement)) {
+                    error(method, "type of accessor for property: '" + accessorName + "' is not accessible to the generated reflector");
+                    valid = false;
+                }
+                property.accessor = method;
+                property.accessorType = methodType.getReturnType();
+                continue;
+            }
+
+            String mutatorName = mutatorMethodNameToFieldName(methodName);
+            if (mutatorName != null && parameterCount == 1 && isVoid) {
+                Property property = property(properties, mutatorName);
+                TypeMirror parameterType = methodType.getParameterTypes().get(0);
+                if (property.mutator != null && processingEnv.getTypeUtils().isSameType(erasure(property.mutatorType), erasure(parameterType))) {
+                    // the same method, inherited more than once
+                    continue;
+                }
+                if (property.mutator != null) {
+                    // the method reflector factory would use either
+                    error(method, "ambiguous mutators for property: '" + mutatorName + "', " + methodName + "() is overloaded");
+                    valid = false;
+                }
+                else if (!isAccessible(parameterType, packageElement)) {
+                    error(method, "type of mutator for property: '" + mutatorName + "' is not accessible to the generated reflector");
+                    valid = false;
+                }
+                property.mutator = method;
+                property.mutatorType = parameterType;
+            }
+        }
+
+        return valid ? properties : null;
+    }
+
+    // what the generated reflector calls the method on: the object, or the type for a static method
+    private static String target(ExecutableElement method, String typeName) {
+        return method.getModifiers().contains(Modifier.STATIC) ? typeName : "((" + typeName + ")object)";
+    }
+
+    private static Property property(Map<String, Property> properties, String name) {
+        Property property = properties.get(name);
+        if (property == null) {
+            properties.put(name, property = new Property(name));
+        }
+        return property;
+    }
+
+    // the following two methods mirror the naming rules of the method reflector factory
+
+    private static String accessorMethodNameToFieldName(String methodName) {
+        if (methodName.startsWith("get")) {
+            return forFieldName(methodName.substring(3));
+        }
+        if (methodName.startsWith("is")) {
+            return forFieldName(methodName.substring(2));
+        }
+        return null;
+    }
+
+    private static String mutatorMethodNameToFieldName(String methodName) {
+        if (methodName.startsWith("set")) {
+            return forFieldName(methodName.substring(3));
+        }
+        return null;
+    }
+
+    private static String forFieldName(String fieldName) {
+        if (fieldName.length() == 0) {
+            return null;
+        }
+        return Character.toLowerCase(fieldName.charAt(0)) + fieldName.substring(1);
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    // the source name of the erased type, without any type annotations
+    private String typeName(TypeMirror type) {
+        type = erasure(type);
+        switch (type.getKind()) {
+        case DECLARED:
+            return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+        case ARRAY:
+            return typeName(((ArrayType)type).getComponentType()) + "[]";
+        default:
+            // primitives
+            return type.getKind().name().toLowerCase();
+        }
+    }
+
+    private String boxedTypeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement packageElement) {
+        type = erasure(type);
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isAccessible(((ArrayType)type).getComponentType(), packageElement);
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return isAccessible((TypeElement)((DeclaredType)type).asElement(), packageElement);
+        }
+        return true;
+    }
+
+    // whether the generated reflector, in the given package, can refer to the type
+    private boolean isAccessible(TypeElement type, PackageElement packageElement) {
+        for (Element element = type; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !processingEnv.getElementUtils().getPackageOf(element).equals(packageElement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String quote(String string) {
+        return "\"" + string + "\"";
+    }
+
+    private static String join(List<String> strings) {
+        StringBuilder sb = new StringBuilder();
+        for (String string : strings) {
+            if (sb.length() != 0) {
+                sb.append(", ");
+            }
+            sb.append(string);
+        }
+        return sb.toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    private static class Property {
+
+        final String name;
+
+        ExecutableElement accessor;
+        ExecutableElement mutator;
+
+        // as members of the reflected type
+        TypeMirror accessorType;
+        TypeMirror mutatorType;
+
+        Property(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,15 +1,40 @@
 package org.ubercraft.sucre.attributes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
-
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
 import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.junit.Test;
 import org.ubercraft.sucre.coercer.CoercerException;
+import org.ubercraft.sucre.reflect.Mutator;
+import org.ubercraft.sucre.reflect.Reflect;
 
 public class AttributesTest {
 
@@ -68,7 +93,7 @@ public class AttributesTest {
         assertEquals(4L, me.getNotFussy());
     }
 
-    private static enum TestEnum {
+    public static enum TestEnum {
         ABC,
         XYZ
     }
@@ -232,8 +257,8 @@ public class AttributesTest {
         test.setInt(7);
         test.setDouble(7.7D);
         assertEquals(true, test.getBoolean());
-        assertEquals(new Integer(7), test.getInt());
-        assertEquals(new Double(7.7D), test.getDouble(), 0.0D);
+        assertEquals(Integer.valueOf(7), test.getInt());
+        assertEquals(Double.valueOf(7.7D), test.getDouble(), 0.0D);
     }
 
     private static interface TestBigAPIWithDefaults {
@@ -259,8 +284,8 @@ public class AttributesTest {
         Attributes attr = new Attributes();
         TestBigAPIWithDefaults test = attr.proxy(TestBigAPIWithDefaults.class);
         assertEquals(true, test.getBoolean());
-        assertEquals(new Integer(7), test.getInt());
-        assertEquals(new Double(7.7D), test.getDouble(), 0.0D);
+        assertEquals(Integer.valueOf(7), test.getInt());
+        assertEquals(Double.valueOf(7.7D), test.getDouble(), 0.0D);
         test.setBoolean(null);
         test.setInt(null);
         test.setDouble(null);
@@ -289,9 +314,9 @@ public class AttributesTest {
         values.put("bool.key", "true");
         Attributes attr = new Attributes(values);
         TestAutoCoerceAPI test = attr.proxy(TestAutoCoerceAPI.class);
-        assertEquals(new Integer(5), new Integer(test.getInt()));
-        assertEquals(new Double(6.3D), new Double(test.getDouble()));
-        assertEquals(new Boolean(true), test.getBoolean());
+        assertEquals(Integer.valueOf(5), Integer.valueOf(test.getInt()));
+        assertEquals(Double.valueOf(6.3D), Double.valueOf(test.getDouble()));
+        assertEquals(Boolean.valueOf(true), test.getBoolean());
     }
 
     private static interface TestBigAutoCoerceAPI {
@@ -314,9 +339,9 @@ public class AttributesTest {
         values.put("bool.key", "true");
         Attributes attr = new Attributes(values);
         TestBigAutoCoerceAPI test = attr.proxy(TestBigAutoCoerceAPI.class);
-        assertEquals(new Integer(5), new Integer(test.getInt()));
-        assertEquals(new Double(6.3D), new Double(test.getDouble()));
-        assertEquals(new Boolean(true), test.getBoolean());
+        assertEquals(Integer.valueOf(5), Integer.valueOf(test.getInt()));
+        assertEquals(Double.valueOf(6.3D), Double.valueOf(test.getDouble()));
+        assertEquals(Boolean.valueOf(true), test.getBoolean());
     }
 
     public static interface TestSuperInterface {
@@ -386,4 +411,678 @@ public class AttributesTest {
         values.put("strictDate", "lkjsdf");
         test.getStrictDate();
     }
+
+    public static class TestBean {
+
+        private String name;
+        private int answer;
+        private long count = -1L;
+        private TestEnum mode;
+
+        @AttributeKey("bean.name")
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @AttributeDefaultInt(42)
+        public int getAnswer() {
+            return answer;
+        }
+
+        public void setAnswer(int answer) {
+            this.answer = answer;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public TestEnum getMode() {
+            return mode;
+        }
+
+        public void setMode(TestEnum mode) {
+            this.mode = mode;
+        }
+    }
+
+    @Test
+    public void testBindTo() throws Exception {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("bean.name", "x");
+        values.put("mode", "xyz");
+        Attributes attr = new Attributes(values);
+        TestBean bean = attr.bindTo(TestBean.class);
+        assertEquals("x", bean.getName());
+        assertEquals(42, bean.getAnswer());
+        assertEquals(TestEnum.XYZ, bean.getMode());
+        // no value or default, so left alone
+        assertEquals(-1L, bean.getCount());
+        attr.set("count", "7");
+        attr.set("answer", 5);
+        assertSame(bean, attr.bindInto(bean));
+        assertEquals(7L, bean.getCount());
+        assertEquals(5, bean.getAnswer());
+    }
+
+    public static class WriteOnlyBean {
+
+        private String secret;
+
+        private int limit;
+
+        @AttributeKey("Bean.Secret")
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        @AttributeDefaultInt(10)
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    @Test
+    public void testBindWriteOnly() throws Exception {
+        Attributes attr = new Attributes();
+        attr.set("Bean.Secret", "x");
+        WriteOnlyBean bean = attr.bindTo(WriteOnlyBean.class);
+        assertEquals("x", bean.secret);
+        assertEquals(10, bean.limit);
+        // keyed through the given factory, as accessors are
+        attr.set("bean.secret", "y");
+        bean = attr.bindTo(DefaultLowerCaseProxyKeyFactory.DEFAULT_LOWER_CASE_PROXY_KEY_FACTORY, null, WriteOnlyBean.class);
+        assertEquals("y", bean.secret);
+        // and defaulted through its hooks
+        bean = attr.bindTo(new DefaultProxyKeyFactory() {
+            @Override
+            protected Object getDefaultValueFor(Mutator mutator) {
+                return mutator.getName().equals("limit") ? 20 : super.getDefaultValueFor(mutator);
+            }
+        }, null, WriteOnlyBean.class);
+        assertEquals(20, bean.limit);
+    }
+
+    @Test
+    public void testFromBean() throws Exception {
+        TestBean bean = new TestBean();
+        bean.setName("y");
+        bean.setAnswer(3);
+        Attributes attr = Attributes.fromBean(bean);
+        assertEquals("y", attr.get("bean.name"));
+        assertEquals(3, attr.get("answer"));
+        assertEquals(-1L, attr.get("count"));
+        TestBean copy = attr.bindTo(TestBean.class);
+        assertEquals("y", copy.getName());
+        assertEquals(3, copy.getAnswer());
+        assertEquals(-1L, copy.getCount());
+        assertEquals(null, copy.getMode());
+    }
+
+    public static interface TestGeneratedAPI {
+
+        @AttributeDefaultInt(7)
+        int getInt();
+
+        void setInt(int value);
+
+        @AttributeKey("long.key")
+        long getLong();
+
+        void setLong(long value);
+
+        double getDouble();
+
+        boolean isBoolean();
+
+        @AttributeDefaultString("XYZ")
+        TestEnum getEnum();
+
+        String getString();
+
+        void setString(String value);
+
+        Attributes attributes();
+
+        float compute(float value);
+    }
+
+    public static interface TestGeneratedMixin {
+
+        @AttributeDefaultString("mixed")
+        String getMixin();
+    }
+
+    @Test
+    public void testGeneratedProxy() throws Exception {
+        Attributes attr = new Attributes();
+        attr.set("double", "2.5");
+        TestGeneratedAPI test = attr.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class, TestGeneratedMixin.class);
+        assertTrue(test instanceof AttributesProxy);
+        assertEquals(7, test.getInt());
+        assertEquals(0L, test.getLong());
+        assertEquals(2.5D, test.getDouble(), 0.0D);
+        assertEquals(false, test.isBoolean());
+        assertEquals(TestEnum.XYZ, test.getEnum());
+        assertEquals(null, test.getString());
+        assertEquals(0.0F, test.compute(1.0F), 0.0F);
+        assertEquals("mixed", ((TestGeneratedMixin)test).getMixin());
+        test.setInt(3);
+        test.setLong(5L);
+        test.setString("x");
+        assertEquals(3, test.getInt());
+        assertEquals(5L, attr.get("long.key"));
+        assertEquals("x", test.getString());
+        assertSame(attr, test.attributes());
+        assertSame(attr, Attributes.getProxiedAttributes(test));
+        assertTrue(test.toString().contains("[long.key]=5"));
+        // one per property, rather than one per method
+        assertEquals(7, Attributes.getProxyKeys(test).size());
+        assertTrue(test.equals(test));
+        assertFalse(test.equals(attr.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class, TestGeneratedMixin.class)));
+        // the generated class is shared
+        assertSame(test.getClass(), new Attributes().proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class,
+                TestGeneratedMixin.class).getClass());
+    }
+
+    @Test
+    public void testGeneratedProxyFallsBackForPrivateInterfaces() throws Exception {
+        Attributes attr = new Attributes();
+        TestAPIWithDefaults test = attr.proxy(ProxyEngine.GENERATED, null, null, TestAPIWithDefaults.class);
+        assertTrue(Proxy.isProxyClass(test.getClass()));
+        assertEquals("x", test.getString());
+        assertSame(attr, Attributes.getProxiedAttributes(test));
+    }
+
+    @Test
+    public void testProxyPlansAreCached() throws Exception {
+        Attributes attr = new Attributes();
+        attr.set("int.key", 3);
+        TestSuperInterface first = attr.proxy(TestSuperInterface.class);
+        TestSuperInterface second = new Attributes().proxy(TestSuperInterface.class);
+        assertSame(first.getClass(), second.getClass());
+        assertSame(Attributes.getProxyKeys(first).iterator().next(), Attributes.getProxyKeys(second).iterator().next());
+        assertEquals(3, first.getInt());
+        assertEquals(0, second.getInt());
+        Attributes.unCacheProxies(TestSuperInterface.class);
+        TestSuperInterface third = attr.proxy(TestSuperInterface.class);
+        assertNotSame(Attributes.getProxyKeys(first).iterator().next(), Attributes.getProxyKeys(third).iterator().next());
+        assertEquals(3, third.getInt());
+        Attributes.clearProxyCache();
+        TestSuperInterface fourth = attr.proxy(TestSuperInterface.class);
+        assertNotSame(Attributes.getProxyKeys(third).iterator().next(), Attributes.getProxyKeys(fourth).iterator().next());
+    }
+
+    @Test
+    public void testProxyPlansAreUncachedByAnyInterface() throws Exception {
+        Attributes attr = new Attributes();
+        Object first = attr.proxy(TestGeneratedAPI.class, TestGeneratedMixin.class);
+        Object second = attr.proxy(TestGeneratedAPI.class, TestGeneratedMixin.class);
+        assertSame(Attributes.getProxyKeys(first).iterator().next(), Attributes.getProxyKeys(second).iterator().next());
+        Attributes.unCacheProxies(TestGeneratedMixin.class);
+        Object third = attr.proxy(TestGeneratedAPI.class, TestGeneratedMixin.class);
+        assertNotSame(Attributes.getProxyKeys(first).iterator().next(), Attributes.getProxyKeys(third).iterator().next());
+        // and the plan is cached again
+        Object fourth = attr.proxy(TestGeneratedAPI.class, TestGeneratedMixin.class);
+        assertSame(Attributes.getProxyKeys(third).iterator().next(), Attributes.getProxyKeys(fourth).iterator().next());
+    }
+
+    @Test
+    public void testProxyPlansDontGrowPerInstance() throws Exception {
+        Attributes attr = new Attributes();
+        // the built-in factories are stateless, so share plans between instances
+        Object first = attr.proxy(new DefaultLowerCaseProxyKeyFactory(), TestSuperInterface.class);
+        Object second = attr.proxy(new DefaultLowerCaseProxyKeyFactory(), TestSuperInterface.class);
+        assertSame(Attributes.getProxyKeys(first).iterator().next(), Attributes.getProxyKeys(second).iterator().next());
+        // and plans don't pin the reflect instance they were made for
+        Reflect reflect = new Reflect();
+        attr.proxy(null, reflect, TestSuperInterface.class);
+        attr.bindInto(null, reflect, new TestBean());
+        WeakReference<Reflect> collected = new WeakReference<Reflect>(reflect);
+        reflect = null;
+        for (int i = 0; i < 100 && collected.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(collected.get());
+    }
+
+    @Test
+    public void testProxyObjectMethods() throws Exception {
+        Attributes attr = new Attributes();
+        TestGeneratedAPI test = attr.proxy(TestGeneratedAPI.class);
+        assertTrue(Proxy.isProxyClass(test.getClass()));
+        assertEquals(System.identityHashCode(test), test.hashCode());
+        assertTrue(test.equals(test));
+        assertFalse(test.equals(attr.proxy(TestGeneratedAPI.class)));
+        assertTrue(test.toString().contains("[enum]=XYZ"));
+        assertSame(attr, test.attributes());
+        assertEquals(0.0F, test.compute(1.0F), 0.0F);
+    }
+
+    @Test
+    public void testProxyValuesAreMemoizedUntilModified() throws Exception {
+        Attributes defaults = new Attributes();
+        defaults.set("string", "a");
+        Attributes attr = new Attributes(defaults);
+        attr.set("int", "12345");
+        for (ProxyEngine engine : ProxyEngine.values()) {
+            TestGeneratedAPI test = attr.proxy(engine, null, null, TestGeneratedAPI.class);
+            assertEquals(12345, test.getInt());
+            assertEquals("a", test.getString());
+            attr.set("int", "6");
+            assertEquals(6, test.getInt());
+            defaults.set("string", "b");
+            assertEquals("b", test.getString());
+            test.setString("c");
+            assertEquals("c", test.getString());
+            attr.remove("string");
+            defaults.remove("string");
+            assertEquals(null, test.getString());
+            attr.set("int", "12345");
+            defaults.set("string", "a");
+        }
+    }
+
+    @Test
+    public void testProxyValuesAreNotMemoizedOnceValuesEscape() throws Exception {
+        Map<Object, Object> values = new HashMap<Object, Object>();
+        values.put("int", "1");
+        Attributes backed = Attributes.backedBy(values);
+        Attributes attr = new Attributes(values);
+        for (ProxyEngine engine : ProxyEngine.values()) {
+            TestGeneratedAPI backedTest = backed.proxy(engine, null, null, TestGeneratedAPI.class);
+            assertEquals(1, backedTest.getInt());
+            values.put("int", "2");
+            assertEquals(2, backedTest.getInt());
+            values.put("int", "1");
+        }
+        TestGeneratedAPI test = attr.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class);
+        assertEquals(1, test.getInt());
+        attr.getValues().put("int", "3");
+        assertEquals(3, test.getInt());
+    }
+
+    @Test
+    public void testDeepDefaultsChain() throws Exception {
+        assertDeepDefaultsChain(false);
+        assertDeepDefaultsChain(true);
+    }
+
+    private void assertDeepDefaultsChain(boolean flatten) {
+        Attributes bottom = new Attributes();
+        bottom.set("a", "bottom");
+        bottom.set("b", "bottom");
+        Attributes middle = new Attributes(bottom);
+        middle.set("b", null);
+        Attributes top = new Attributes(middle);
+        Attributes attr = new Attributes(new Attributes(top));
+        attr.setFlattenDefaults(flatten);
+        assertEquals("bottom", attr.get("a"));
+        assertEquals(null, attr.get("b", "def"));
+        assertTrue(attr.hasKeyOrDefaultKey("b"));
+        assertEquals("def", attr.get("c", "def"));
+        assertFalse(attr.hasKeyOrDefaultKey("c"));
+        // a modified layer is seen through the flattened chain
+        middle.set("c", "middle");
+        bottom.remove("a");
+        assertEquals("middle", attr.get("c"));
+        assertFalse(attr.hasKeyOrDefaultKey("a"));
+        top.set("a", "top");
+        assertEquals("top", attr.get("a"));
+        assertEquals(flatten, attr.freeze().isFlattenDefaults());
+        assertEquals("top", attr.freeze().get("a"));
+        // as is an untracked layer
+        Map<Object, Object> values = new HashMap<Object, Object>();
+        Attributes backed = new Attributes(new Attributes(new Attributes(Attributes.backedBy(values))));
+        backed.setFlattenDefaults(flatten);
+        assertEquals(null, backed.get("d"));
+        values.put("d", "backed");
+        assertEquals("backed", backed.get("d"));
+    }
+
+    @Test
+    public void testConcurrentCompoundWritesAreAtomic() throws Exception {
+        final Map<Object, Object> values = new HashMap<Object, Object>();
+        for (int i = 0; i < 1000; i++) {
+            values.put("key" + i, i);
+        }
+        for (int round = 0; round < 50; round++) {
+            final Attributes attr = Attributes.concurrent();
+            Thread adder = new Thread() {
+                @Override
+                public void run() {
+                    attr.addAll(values);
+                }
+            };
+            Thread clearer = new Thread() {
+                @Override
+                public void run() {
+                    attr.clear();
+                }
+            };
+            adder.start();
+            clearer.start();
+            adder.join();
+            clearer.join();
+            // a clear never lands part way through adding
+            int size = attr.getValues().size();
+            assertTrue("size: " + size, size == 0 || size == values.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentAttributes() throws Exception {
+        final Attributes attr = Attributes.concurrent();
+        attr.set(null, "null key");
+        attr.set("null value", null);
+        assertEquals("null key", attr.get(null));
+        assertTrue(attr.hasKey("null value"));
+        assertEquals(null, attr.get("null value", "def"));
+        assertEquals(new Attributes(attr.getValues()), attr);
+        attr.clear();
+        assertTrue(attr.getValues().isEmpty());
+
+        final TestGeneratedAPI test = attr.proxy(TestGeneratedAPI.class);
+        final int threads = 4;
+        final int writes = 1000;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            writers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < writes; i++) {
+                        attr.set(thread + "." + i, i);
+                        test.setInt(i);
+                        test.getInt();
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(threads * writes + 1, attr.keySet().size());
+        assertEquals(writes - 1, attr.get("3." + (writes - 1)));
+        assertEquals(writes - 1, test.getInt());
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        Attributes defaults = new Attributes();
+        defaults.set("int", "7");
+        Attributes attr = new Attributes(defaults);
+        for (int i = 0; i < 100; i++) {
+            attr.set("key" + i, i);
+        }
+        attr.set(null, "null key");
+        attr.set("null value", null);
+        Attributes frozen = attr.freeze();
+        assertTrue(frozen.isFrozen());
+        assertFalse(attr.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(attr, frozen);
+        assertEquals(attr.hashCode(), frozen.hashCode());
+        assertEquals(attr.getValues(), frozen.getValues());
+        assertEquals(42, frozen.get("key42"));
+        assertEquals("null key", frozen.get(null));
+        assertTrue(frozen.hasKey("null value"));
+        assertEquals(null, frozen.get("null value", "def"));
+        assertEquals("def", frozen.get("missing", "def"));
+        assertEquals(7, frozen.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class).getInt());
+        // a snapshot, unaffected by later changes
+        attr.set("key42", 0);
+        defaults.set("int", "8");
+        assertEquals(42, frozen.get("key42"));
+        assertEquals("7", frozen.get("int"));
+    }
+
+    // a key whose hash code differs between "JVMs", as identity hash codes do
+    private static class SaltedKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static int SALT;
+
+        private final String name;
+
+        SaltedKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() ^ SALT;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SaltedKey && ((SaltedKey)obj).name.equals(name);
+        }
+    }
+
+    @Test
+    public void testFrozenValuesSerialization() throws Exception {
+        Map<Object, Object> values = new HashMap<Object, Object>();
+        for (int i = 0; i < 100; i++) {
+            values.put(new SaltedKey("key" + i), i);
+        }
+        values.put(null, "null key");
+        CopyOnWriteValues copyOnWrite = new CopyOnWriteValues();
+        copyOnWrite.putAll(values);
+        byte[] frozen = serialize(new FrozenValues(values));
+        byte[] copied = serialize(copyOnWrite);
+        SaltedKey.SALT = 0x5a5a5a5a;
+        try {
+            for (Object o : Arrays.asList(deserialize(frozen), deserialize(copied))) {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> map = (Map<Object, Object>)o;
+                assertEquals(42, map.get(new SaltedKey("key42")));
+                assertEquals("null key", map.get(null));
+                assertEquals(new HashMap<Object, Object>(values).hashCode(), map.hashCode());
+            }
+            assertTrue(deserialize(frozen) instanceof FrozenValues);
+        }
+        finally {
+            SaltedKey.SALT = 0;
+        }
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenAttributesRejectModification() throws Exception {
+        Attributes attr = new Attributes(new Attributes());
+        attr.set("key", "value");
+        attr.freeze().getDefaults().set("key", "value");
+    }
+
+    @Test
+    public void testCopyOnWriteAttributes() throws Exception {
+        Attributes attr = Attributes.copyOnWrite();
+        attr.set("int", "1");
+        attr.set("string", "a");
+        TestGeneratedAPI test = attr.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class);
+        assertEquals(1, test.getInt());
+        Attributes snapshot = attr.freeze();
+        assertSame(snapshot.getValues(), attr.freeze().getValues());
+        AttributesBatch batch = attr.batch().set("int", "2").remove("string").set(null, "null key");
+        // nothing is seen until committed
+        assertEquals(1, test.getInt());
+        assertEquals("a", attr.get("string"));
+        assertSame(attr, batch.commit());
+        assertEquals(2, test.getInt());
+        assertEquals(null, test.getString());
+        assertFalse(attr.hasKey("string"));
+        assertEquals("null key", attr.get(null));
+        // earlier snapshots are unchanged
+        assertEquals("1", snapshot.get("int"));
+        assertEquals("a", snapshot.get("string"));
+        attr.batch().clear().set("string", "b").commit();
+        assertEquals(1, attr.getValues().size());
+        assertEquals("b", test.getString());
+        assertEquals(7, test.getInt());
+    }
+
+    @Test
+    public void testBatchOnPlainAttributes() throws Exception {
+        Attributes attr = new Attributes();
+        attr.set("a", 1);
+        attr.batch().remove("a").addAll(Collections.singletonMap("b", 2)).commit();
+        assertFalse(attr.hasKey("a"));
+        assertEquals(2, attr.get("b"));
+        // adding other attributes only reads them, so they stay tracked
+        Attributes other = new Attributes();
+        other.set("c", 3);
+        attr.batch().addAll(other).commit();
+        assertEquals(3, attr.get("c"));
+        assertTrue(other.getVersion() >= 0L);
+    }
+
+    @Test
+    public void testFailedAddAllIsCounted() throws Exception {
+        Attributes attr = new Attributes();
+        long version = attr.getVersion();
+        // fails after the first entry is added
+        Map<Object, Object> failing = new AbstractMap<Object, Object>() {
+            @Override
+            public Set<Map.Entry<Object, Object>> entrySet() {
+                return new AbstractSet<Map.Entry<Object, Object>>() {
+                    @Override
+                    public Iterator<Map.Entry<Object, Object>> iterator() {
+                        final Iterator<Map.Entry<Object, Object>> entries = Collections.<Object, Object> singletonMap("a", 1).entrySet().iterator();
+                        return new Iterator<Map.Entry<Object, Object>>() {
+                            @Override
+                            public boolean hasNext() {
+                                return true;
+                            }
+
+                            @Override
+                            public Map.Entry<Object, Object> next() {
+                                if (entries.hasNext()) {
+                                    return entries.next();
+                                }
+                                throw new IllegalStateException("failed");
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return 2;
+                    }
+                };
+            }
+        };
+        try {
+            attr.addAll(failing);
+            fail("expected a failure");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, attr.get("a"));
+        assertTrue(attr.getVersion() > version);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBatchCommitsOnce() throws Exception {
+        AttributesBatch batch = Attributes.copyOnWrite().batch();
+        batch.commit();
+        batch.commit();
+    }
+
+    // runs tasks when asked, so that tests control delivery
+    private static class QueuedExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        int runAll() {
+            int count = 0;
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static class RecordingListener implements AttributesListener {
+
+        private final List<Set<Object>> changes = new ArrayList<Set<Object>>();
+
+        @Override
+        public void attributesChanged(AttributesChange change) {
+            changes.add(change.getKeys());
+        }
+    }
+
+    @Test
+    public void testSubscriptions() throws Exception {
+        Attributes attr = new Attributes();
+        QueuedExecutor executor = new QueuedExecutor();
+        RecordingListener keyListener = new RecordingListener();
+        RecordingListener prefixListener = new RecordingListener();
+        RecordingListener allListener = new RecordingListener();
+        attr.subscribe(executor, "int", false, keyListener);
+        attr.subscribe(executor, "pool.", true, prefixListener);
+        AttributesSubscription all = attr.subscribe(executor, null, true, allListener);
+
+        TestGeneratedAPI test = attr.proxy(ProxyEngine.GENERATED, null, null, TestGeneratedAPI.class);
+        test.setInt(5);
+        attr.set("pool.size", 10);
+        attr.set("pool.timeout", 20);
+        attr.set(7, "other");
+        // nothing is delivered on the writer's thread
+        assertTrue(keyListener.changes.isEmpty());
+        assertEquals(3, executor.runAll());
+        assertEquals(Arrays.<Object> asList(Collections.<Object> singleton("int")), keyListener.changes);
+        // queued changes are coalesced
+        assertEquals(Arrays.<Object> asList(new HashSet<Object>(Arrays.<Object> asList("pool.size", "pool.timeout"))), prefixListener.changes);
+        assertEquals(Arrays.<Object> asList(new HashSet<Object>(Arrays.<Object> asList("int", "pool.size", "pool.timeout", 7))), allListener.changes);
+
+        all.cancel();
+        assertTrue(all.isCancelled());
+        attr.batch().set("pool.size", 11).remove("int").commit();
+        assertEquals(2, executor.runAll());
+        assertEquals(2, keyListener.changes.size());
+        assertEquals(Collections.<Object> singleton("pool.size"), prefixListener.changes.get(1));
+        assertEquals(1, allListener.changes.size());
+
+        attr.clear();
+        executor.runAll();
+        assertEquals(new HashSet<Object>(Arrays.<Object> asList("pool.size", "pool.timeout")), prefixListener.changes.get(2));
+        assertEquals(3, prefixListener.changes.size());
+    }
 }
@@ -0,0 +1,217 @@
+package org.ubercraft.sucre.attributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PropertiesFileSourceTest {
+
+    public static interface TestConfig {
+
+        @AttributeKey("pool.size")
+        int getPoolSize();
+
+        @AttributeKey("pool.name")
+        @AttributeDefaultString("default")
+        String getPoolName();
+    }
+
+    private Path dir;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sucre");
+        file = dir.resolve("test.properties");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        Files.delete(dir);
+    }
+
+    private void write(String... keysAndValues) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        OutputStream out = new FileOutputStream(file.toFile());
+        try {
+            properties.store(out, null);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        write("pool.size", "5", "pool.name", "a", "other", "x");
+        PropertiesFileSource source = new PropertiesFileSource(file);
+        Attributes attr = source.getAttributes();
+        TestConfig config = attr.proxy(ProxyEngine.GENERATED, null, null, TestConfig.class);
+        assertEquals(5, config.getPoolSize());
+        assertEquals("a", config.getPoolName());
+        assertEquals(0, source.reload());
+        write("pool.size", "6", "other", "x", "new", "y");
+        // pool.size changed, pool.name removed, new added
+        assertEquals(3, source.reload());
+        assertEquals(6, config.getPoolSize());
+        assertEquals("default", config.getPoolName());
+        assertEquals("y", attr.get("new"));
+        assertFalse(attr.hasKey("pool.name"));
+    }
+
+    @Test
+    public void testMalformedReloadKeepsValues() throws Exception {
+        write("pool.size", "5");
+        PropertiesFileSource source = new PropertiesFileSource(file);
+        Files.write(file, "pool.size=\\uZZZZ\n".getBytes("ISO-8859-1"));
+        try {
+            source.reload();
+            fail("expected a malformed file to fail");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("5", source.getAttributes().get("pool.size"));
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        write("pool.size", "5");
+        PropertiesFileSource source = new PropertiesFileSource(file);
+        source.setQuietPeriod(20L, TimeUnit.MILLISECONDS);
+        source.start();
+        try {
+            TestConfig config = source.getAttributes().proxy(TestConfig.class);
+            assertEquals(5, config.getPoolSize());
+            write("pool.size", "7");
+            // watch services may poll, so allow for a slow one
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30L);
+            while (config.getPoolSize() != 7) {
+                if (System.nanoTime() - deadline > 0L) {
+                    fail("change not seen before the deadline");
+                }
+                Thread.sleep(5L);
+            }
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void testMapped() throws Exception {
+        String content = "# comment\n" //
+                + "! another comment \\\n" //
+                + "pool.size = 5\n" //
+                + "pool.name:a\n" //
+                + "  spaced   value with spaces  \n" //
+                + "escaped\\ key\\=x=tab\\there\\u0041\n" //
+                + "continued = one, \\\n" //
+                + "       two\r\n" //
+                + "empty\n" //
+                + "dup=1\n" //
+                + "dup=2\n" //
+                + "trailing=\\";
+        Files.write(file, content.getBytes("ISO-8859-1"));
+        Properties expected = new Properties();
+        expected.load(new ByteArrayInputStream(content.getBytes("ISO-8859-1")));
+
+        Attributes attr = Attributes.mapped(file);
+        assertEquals(expected, attr.getValues());
+        assertEquals(expected.size(), attr.getValues().size());
+        // read-only, so handing out the values leaves modifications tracked
+        assertTrue(attr.getVersion() >= 0L);
+        assertEquals("value with spaces  ", attr.get("spaced"));
+        assertEquals("tab\there" + "A", attr.get("escaped key=x"));
+        assertEquals("one, two", attr.get("continued"));
+        assertEquals("", attr.get("empty"));
+        assertEquals("2", attr.get("dup"));
+        assertEquals(null, attr.get("missing"));
+        assertFalse(attr.hasKey("comment"));
+        TestConfig config = attr.proxy(ProxyEngine.GENERATED, null, null, TestConfig.class);
+        assertEquals(5, config.getPoolSize());
+        assertEquals("a", config.getPoolName());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMappedIsReadOnly() throws Exception {
+        write("a", "b");
+        Attributes.mapped(file).set("a", "c");
+    }
+
+    @Test
+    public void testMappedMatchesProperties() throws Exception {
+        Random random = new Random(42);
+        String chars = "ab =:#!\\\t\n\r\u00e9\u4e2d ";
+        String[] keysAndValues = new String[2000];
+        for (int i = 0; i < keysAndValues.length; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--) {
+                b.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            keysAndValues[i] = b.toString() + i;
+        }
+        write(keysAndValues);
+        Properties expected = new Properties();
+        InputStream in = Files.newInputStream(file);
+        try {
+            expected.load(in);
+        }
+        finally {
+            in.close();
+        }
+        Attributes attr = Attributes.mapped(file);
+        for (String key : expected.stringPropertyNames()) {
+            assertEquals(expected.getProperty(key), attr.get(key));
+        }
+        assertEquals(expected, attr.getValues());
+    }
+
+    @Test
+    public void testMappedInFlattenedChain() throws Exception {
+        write("a", "mapped", "b", "mapped", "c", "mapped");
+        Attributes below = new Attributes();
+        below.set("d", "below");
+        Attributes mapped = Attributes.mapped(file, below);
+        Attributes middle = new Attributes(mapped);
+        middle.set("b", "middle");
+        Attributes top = new Attributes(new Attributes(middle));
+        top.set("c", "top");
+        Attributes attr = new Attributes(top);
+        attr.setFlattenDefaults(true);
+        assertEquals("mapped", attr.get("a"));
+        assertEquals("middle", attr.get("b"));
+        assertEquals("top", attr.get("c"));
+        assertEquals("below", attr.get("d"));
+        assertEquals(null, attr.get("e"));
+        // the layers above the mapped one are still rebuilt on change
+        middle.set("a", "middle");
+        assertEquals("middle", attr.get("a"));
+        // as are those below it
+        below.set("e", "below");
+        assertEquals("below", attr.get("e"));
+    }
+}
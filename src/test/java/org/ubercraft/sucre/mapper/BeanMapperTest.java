@@ -0,0 +1,181 @@
+package org.ubercraft.sucre.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.ubercraft.sucre.coercer.CoercerException;
+import org.ubercraft.sucre.reflect.Reflect;
+
+public class BeanMapperTest {
+
+    public static class Source {
+
+        private String id;
+        private int count;
+        private String ratio;
+        private Integer total;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(String ratio) {
+            this.ratio = ratio;
+        }
+
+        public Integer getTotal() {
+            return total;
+        }
+
+        public void setTotal(Integer total) {
+            this.total = total;
+        }
+    }
+
+    public static class Target {
+
+        private long id;
+        private int count;
+        private double ratio;
+        private long total;
+        private String label;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public double getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(double ratio) {
+            this.ratio = ratio;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Supplier<Target> TARGETS = new Supplier<Target>() {
+        @Override
+        public Target get() {
+            return new Target();
+        }
+    };
+
+    private static Source source(int i) {
+        Source source = new Source();
+        source.setId(String.valueOf(i));
+        source.setCount(i);
+        source.setRatio(i + ".5");
+        return source;
+    }
+
+    @Test
+    public void testCopyByName() {
+        BeanMapper<Source, Target> mapper = new BeanMapper<Source, Target>(Source.class, Target.class);
+        Target target = mapper.copy(source(3), new Target());
+        assertEquals(3L, target.getId());
+        assertEquals(3, target.getCount());
+        assertEquals(3.5D, target.getRatio(), 0.0D);
+        // null to primitive gives the default
+        assertEquals(0L, target.getTotal());
+        assertNull(target.getLabel());
+    }
+
+    @Test
+    public void testCopyWithMapping() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("id", "label");
+        mapping.put("count", "total");
+        BeanMapper<Source, Target> mapper = new BeanMapper<Source, Target>(Source.class, Target.class, mapping);
+        Target target = mapper.copy(source(5), new Target());
+        assertEquals("5", target.getLabel());
+        assertEquals(5L, target.getTotal());
+        assertEquals(0L, target.getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMapping() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("id", "missing");
+        new BeanMapper<Source, Target>(Source.class, Target.class, mapping);
+    }
+
+    @Test(expected = CoercerException.class)
+    public void testStrict() {
+        Source source = source(1);
+        source.setRatio("abc");
+        new BeanMapper<Source, Target>(Source.class, Target.class, null, Reflect.METHOD_HANDLES, true).copy(source, new Target());
+    }
+
+    @Test
+    public void testCopyAll() {
+        List<Source> sources = new ArrayList<Source>();
+        for (int i = 0; i < 1000; i++) {
+            sources.add(source(i));
+        }
+        sources.set(10, null);
+        BeanMapper<Source, Target> mapper = new BeanMapper<Source, Target>(Source.class, Target.class, null, Reflect.METHOD_HANDLES, false);
+        for (boolean parallel : Arrays.asList(false, true)) {
+            List<Target> targets = mapper.copyAll(sources, TARGETS, parallel);
+            assertEquals(sources.size(), targets.size());
+            assertNull(targets.get(10));
+            for (int i = 0; i < targets.size(); i++) {
+                if (i != 10) {
+                    assertEquals(i, targets.get(i).getCount());
+                    assertEquals(i, targets.get(i).getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,1085 @@
+package org.ubercraft.sucre.reflect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+import org.ubercraft.sucre.common.ExceptionUtil;
+import org.ubercraft.sucre.common.ReflectionUtil;
+import org.ubercraft.sucre.reflect.processor.ReflectorProcessor;
+
+public class ReflectTest {
+
+    public static class TestBean {
+
+        private String name;
+        private int count;
+        private boolean active;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+
+    private static class PrivateBean {
+
+        private long value;
+
+        @SuppressWarnings("unused")
+        public long getValue() {
+            return value;
+        }
+
+        @SuppressWarnings("unused")
+        public void setValue(long value) {
+            this.value = value;
+        }
+    }
+
+    private static void assertAccessAndMutate(Reflect reflect) {
+        TestBean bean = new TestBean();
+        Reflector reflector = reflect.getReflector(TestBean.class);
+        assertNull(reflector.getAccessor("name").access(bean));
+        reflector.getMutator("name").mutate(bean, "x");
+        reflector.getMutator("count").mutate(bean, 7);
+        reflector.getMutator("active").mutate(bean, true);
+        assertEquals("x", reflector.getAccessor("name").access(bean));
+        assertEquals(7, reflector.getAccessor("count").access(bean));
+        assertEquals(true, reflector.getAccessor("active").access(bean));
+        assertEquals("x", bean.getName());
+        assertEquals(7, bean.getCount());
+        assertTrue(bean.isActive());
+    }
+
+    @Test
+    public void testMethods() {
+        assertAccessAndMutate(Reflect.METHODS);
+    }
+
+    @Test
+    public void testMethodHandles() {
+        assertAccessAndMutate(Reflect.METHOD_HANDLES);
+    }
+
+    @Test
+    public void testGenerated() {
+        Reflect reflect = new Reflect();
+        reflect.setReflectorFactoryClass(TestBean.class, GeneratedReflectorFactory.class);
+        assertAccessAndMutate(reflect);
+        assertTrue(reflect.getReflector(TestBean.class).getAccessor("count").getClass().getName().contains("Dispatched"));
+    }
+
+    @Test
+    public void testGeneratedNonPublicType() {
+        PrivateBean bean = new PrivateBean();
+        Reflector reflector = new Reflect(GeneratedReflectorFactory.class).getReflector(PrivateBean.class);
+        reflector.getMutator("value").mutate(bean, 42L);
+        assertEquals(42L, reflector.getAccessor("value").access(bean));
+    }
+
+    @Test
+    public void testMethodHandlesNonPublicType() {
+        PrivateBean bean = new PrivateBean();
+        Reflector reflector = Reflect.METHOD_HANDLES.getReflector(PrivateBean.class);
+        reflector.getMutator("value").mutate(bean, 42L);
+        assertEquals(42L, reflector.getAccessor("value").access(bean));
+        assertSame(reflector.getMutator("value"), reflector.getAccessor("value").getPairedMutator());
+    }
+
+    public static class FailingBean {
+
+        public String getChecked() throws Exception {
+            throw new Exception("checked");
+        }
+
+        public int getUnchecked() {
+            throw new IllegalStateException("unchecked");
+        }
+
+        public void setChecked(String checked) throws Exception {
+            throw new Exception("checked");
+        }
+    }
+
+    // redeclared so that they can only be bound through method handles
+    private static class PrivateFailingBean extends FailingBean {
+
+        @Override
+        public String getChecked() throws Exception {
+            throw new Exception("checked");
+        }
+
+        @Override
+        public int getUnchecked() {
+            throw new IllegalStateException("unchecked");
+        }
+
+        @Override
+        public void setChecked(String checked) throws Exception {
+            throw new Exception("checked");
+        }
+    }
+
+    // every way of calling a method should surface a failure in the same way Method.invoke does
+    private static void assertInvocationFailure(Class<? extends Throwable> expected, Runnable call) {
+        try {
+            call.run();
+        }
+        catch (RuntimeException e) {
+            assertSame(RuntimeException.class, e.getClass());
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertSame(expected, e.getCause().getCause().getClass());
+            return;
+        }
+        fail("expected a failure");
+    }
+
+    private static void assertFailures(Reflect reflect, Class<?> type, final FailingBean bean) {
+        final Reflector reflector = reflect.getReflector(type);
+        assertInvocationFailure(Exception.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getAccessor("checked").access(bean);
+            }
+        });
+        assertInvocationFailure(Exception.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getMutator("checked").mutate(bean, "x");
+            }
+        });
+        assertInvocationFailure(IllegalStateException.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getAccessor("unchecked").access(bean);
+            }
+        });
+        assertInvocationFailure(IllegalStateException.class, new Runnable() {
+            @Override
+            public void run() {
+                ((IntAccessor)reflector.getAccessor("unchecked")).accessInt(bean);
+            }
+        });
+
+        // a bad receiver or argument is not a failure in the method, so isn't wrapped
+        try {
+            reflector.getAccessor("checked").access(null);
+            fail("expected a failure");
+        }
+        catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            ((IntAccessor)reflector.getAccessor("unchecked")).accessInt("x");
+            fail("expected a failure");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            reflector.getMutator("checked").mutate(bean, 1);
+            fail("expected a failure");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailures() {
+        assertFailures(Reflect.METHODS, FailingBean.class, new FailingBean());
+        assertFailures(Reflect.METHOD_HANDLES, FailingBean.class, new FailingBean());
+        assertFailures(Reflect.METHOD_HANDLES, PrivateFailingBean.class, new PrivateFailingBean());
+    }
+
+    @Test
+    public void testGeneratedFailures() {
+        Reflect reflect = new Reflect(GeneratedReflectorFactory.class);
+        final Reflector reflector = reflect.getReflector(FailingBean.class);
+        final FailingBean bean = new FailingBean();
+        assertInvocationFailure(Exception.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getAccessor("checked").access(bean);
+            }
+        });
+        assertInvocationFailure(Exception.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getMutator("checked").mutate(bean, "x");
+            }
+        });
+        assertInvocationFailure(IllegalStateException.class, new Runnable() {
+            @Override
+            public void run() {
+                reflector.getAccessor("unchecked").access(bean);
+            }
+        });
+
+        // bad arguments fail before the call, as they do through Method.invoke
+        Mutator count = reflect.getReflector(TestBean.class).getMutator("count");
+        try {
+            count.mutate(new TestBean(), null);
+            fail("expected a failure");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            count.mutate(bean, 1);
+            fail("expected a failure");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Reflectable
+    public static class CompiledBean extends TestBean {
+
+        private List<String> tags;
+
+        @Deprecated
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public String getReadOnly() {
+            return "read";
+        }
+    }
+
+    @Test
+    public void testCompiled() {
+        CompiledBean bean = new CompiledBean();
+        Reflector reflector = new Reflect().getReflector(CompiledBean.class);
+        assertTrue(reflector instanceof CompiledReflector);
+        assertEquals(Arrays.asList("active", "count", "name", "readOnly", "tags"), slotNames(reflector));
+        reflector.getMutator("name").mutate(bean, "x");
+        reflector.mutate(bean, reflector.getSlot("count"), 7);
+        reflector.getMutator("active").mutate(bean, true);
+        reflector.getMutator("tags").mutate(bean, Arrays.asList("a"));
+        assertEquals("x", reflector.getAccessor("name").access(bean));
+        assertEquals(7, reflector.access(bean, reflector.getSlot("count")));
+        assertEquals(true, bean.isActive());
+        assertEquals(Arrays.asList("a"), bean.getTags());
+        assertEquals("read", reflector.getAccessor("readOnly").access(bean));
+        assertNull(reflector.getMutator("readOnly"));
+        assertFalse(reflector.getAccessor("readOnly").isPaired());
+        assertSame(reflector.getMutator("tags"), reflector.getAccessor("tags").getPairedMutator());
+        assertSame(int.class, reflector.getAccessor("count").getType());
+        assertSame(TestBean.class, reflector.getAccessor("count").getDeclaringType());
+        assertTrue(reflector.getAccessor("tags").getAnnotation(Deprecated.class) != null);
+        try {
+            reflector.mutate(bean, reflector.getSlot("readOnly"), "x");
+            fail("mutated a read-only property");
+        }
+        catch (ReflectException e) {
+            // expected
+        }
+        // an explicit factory takes precedence
+        Reflect reflect = new Reflect();
+        reflect.setReflectorFactoryClass(CompiledBean.class, MethodReflectorFactory.class);
+        assertFalse(reflect.getReflector(CompiledBean.class) instanceof CompiledReflector);
+        assertEquals(slotNames(reflector), slotNames(reflect.getReflector(CompiledBean.class)));
+    }
+
+    public static class GenericBase<T> {
+
+        private T value;
+
+        public T getValue() {
+            return value;
+        }
+
+        public void setValue(T value) {
+            this.value = value;
+        }
+    }
+
+    @Reflectable
+    public static class CompiledGenericBean extends GenericBase<String> {}
+
+    @Test
+    public void testCompiledGenericSuperclass() {
+        CompiledGenericBean bean = new CompiledGenericBean();
+        Reflector reflector = new Reflect().getReflector(CompiledGenericBean.class);
+        assertTrue(reflector instanceof CompiledReflector);
+        // types are resolved against the reflected type
+        assertSame(String.class, reflector.getAccessor("value").getType());
+        assertSame(String.class, reflector.getMutator("value").getType());
+        assertTrue(reflector.getAccessor("value").isPaired());
+        reflector.getMutator("value").mutate(bean, "x");
+        assertEquals("x", reflector.getAccessor("value").access(bean));
+        assertSame(GenericBase.class, reflector.getMutator("value").getDeclaringType());
+    }
+
+    @Reflectable
+    public static class CompiledStaticBean {
+
+        private static String shared;
+
+        public static String getShared() {
+            return shared;
+        }
+
+        public static void setShared(String value) {
+            shared = value;
+        }
+    }
+
+    @Test
+    public void testCompiledStaticProperties() {
+        Reflector reflector = new Reflect().getReflector(CompiledStaticBean.class);
+        assertTrue(reflector instanceof CompiledReflector);
+        // public static methods are properties too, as returned by getMethods()
+        Reflect reflect = new Reflect();
+        reflect.setReflectorFactoryClass(CompiledStaticBean.class, MethodReflectorFactory.class);
+        assertEquals(slotNames(reflect.getReflector(CompiledStaticBean.class)), slotNames(reflector));
+        reflector.getMutator("shared").mutate(new CompiledStaticBean(), "s");
+        try {
+            assertEquals("s", reflector.getAccessor("shared").access(new CompiledStaticBean()));
+        }
+        finally {
+            CompiledStaticBean.shared = null;
+        }
+    }
+
+    @Test
+    public void testProcessorRejectsAmbiguousProperties() throws Exception {
+        assertProcessorError("public boolean isFlag() { return true; } public boolean getFlag() { return true; }", "ambiguous accessors");
+        assertProcessorError("public void setSize(int size) {} public void setSize(String size) {}", "ambiguous mutators");
+        assertProcessorError("public Hidden getHidden() { return null; } private static class Hidden {}", "not accessible");
+    }
+
+    private static void assertProcessorError(String members, String message) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final String source = "package p; @org.ubercraft.sucre.reflect.Reflectable public class Bean { " + members + " }";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///p/Bean.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        Path out = Files.createTempDirectory("sucre-processor");
+        try {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", out.toString(), "-s", out.toString(),
+                    "-processor", ReflectorProcessor.class.getName());
+            assertFalse(compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file)).call());
+            StringBuilder errors = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                errors.append(diagnostic.getMessage(null)).append('\n');
+            }
+            assertTrue(errors.toString(), errors.indexOf(message) >= 0);
+        }
+        finally {
+            for (File f : out.toFile().listFiles()) {
+                f.delete();
+            }
+            out.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testCompiledOnlyStandsInForMethods() {
+        Reflector fields = Reflect.FIELDS.getReflector(CompiledBean.class);
+        assertFalse(fields instanceof CompiledReflector);
+        assertTrue(fields.getAccessor("tags") instanceof FieldReflector);
+        assertFalse(Reflect.VAR_HANDLES.getReflector(CompiledBean.class) instanceof CompiledReflector);
+        assertFalse(Reflect.METHOD_HANDLES.getReflector(CompiledBean.class) instanceof CompiledReflector);
+        assertTrue(Reflect.METHODS.getReflector(CompiledBean.class) instanceof CompiledReflector);
+    }
+
+    @Test
+    public void testAnnotationIndex() {
+        Reflect reflect = new Reflect();
+        reflect.setReflectorFactoryClass(CompiledBean.class, GeneratedReflectorFactory.class);
+        Accessor tags = reflect.getReflector(CompiledBean.class).getAccessor("tags");
+        AnnotationIndex index = tags.getAnnotationIndex();
+        assertSame(index, tags.getAnnotationIndex());
+        assertEquals(1, index.size());
+        assertTrue(index.contains(Deprecated.class));
+        assertSame(index.get(Deprecated.class), tags.getAnnotation(Deprecated.class));
+        assertNull(index.get(Reflectable.class));
+        assertSame(AnnotationIndex.EMPTY, reflect.getReflector(CompiledBean.class).getAccessor("name").getAnnotationIndex());
+        assertSame(AnnotationIndex.EMPTY, Reflect.FIELDS.getReflector(TestBean.class).getAccessor("name").getAnnotationIndex());
+    }
+
+    @Test
+    public void testDefaultAnnotationIndex() {
+        final Accessor tags = Reflect.METHODS.getReflector(CompiledBean.class).getAccessor("tags");
+        // an accessor implementing only the original methods
+        Accessor accessor = new Accessor() {
+
+            @Override
+            public Object access(Object object) {
+                return tags.access(object);
+            }
+
+            @Override
+            public String getName() {
+                return tags.getName();
+            }
+
+            @Override
+            public Class<?> getType() {
+                return tags.getType();
+            }
+
+            @Override
+            public Class<?> getDeclaringType() {
+                return tags.getDeclaringType();
+            }
+
+            @Override
+            public boolean isPaired() {
+                return false;
+            }
+
+            @Override
+            public Accessor getPairedAccessor() {
+                return this;
+            }
+
+            @Override
+            public Mutator getPairedMutator() {
+                return null;
+            }
+
+            @Override
+            public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
+                return tags.getAnnotation(annotationClass);
+            }
+
+            @Override
+            public Annotation[] getAnnotations() {
+                return tags.getAnnotations();
+            }
+        };
+        AnnotationIndex index = accessor.getAnnotationIndex();
+        assertEquals(1, index.size());
+        assertSame(tags.getAnnotation(Deprecated.class), index.get(Deprecated.class));
+    }
+
+    private static List<String> slotNames(Reflector reflector) {
+        List<String> names = new ArrayList<String>();
+        for (int slot = 0; slot < reflector.getSlotCount(); slot++) {
+            names.add(reflector.getSlotName(slot));
+        }
+        return names;
+    }
+
+    private static void assertSlots(Reflect reflect) {
+        TestBean bean = new TestBean();
+        Reflector reflector = reflect.getReflector(TestBean.class);
+        assertEquals(3, reflector.getSlotCount());
+        assertEquals(-1, reflector.getSlot("missing"));
+        int name = reflector.getSlot("name");
+        int count = reflector.getSlot("count");
+        assertEquals("name", reflector.getSlotName(name));
+        assertSame(reflector.getAccessor("count"), reflector.getAccessor(count));
+        assertSame(reflector.getMutator("count"), reflector.getMutator(count));
+        reflector.mutate(bean, name, "z");
+        reflector.mutate(bean, count, 9);
+        assertEquals("z", reflector.access(bean, name));
+        assertEquals(9, reflector.access(bean, count));
+
+        // dense, in slot order
+        int slot = 0;
+        for (Accessor accessor : reflector.getAccessors()) {
+            assertSame(reflector.getAccessor(slot++), accessor);
+        }
+    }
+
+    // a reflector implementing only the name based methods, as one written before slots were added would
+    public static class NameOnlyReflectorFactory implements ReflectorFactory {
+
+        static final AtomicInteger LISTINGS = new AtomicInteger();
+
+        @Override
+        public Reflector createReflector(Class<?> type) {
+            final Reflector reflector = Reflect.METHODS.getReflector(type);
+            return new Reflector() {
+
+                @Override
+                public Accessor getAccessor(String name) {
+                    return reflector.getAccessor(name);
+                }
+
+                @Override
+                public Iterable<Accessor> getAccessors() {
+                    LISTINGS.incrementAndGet();
+                    return reflector.getAccessors();
+                }
+
+                @Override
+                public Mutator getMutator(String name) {
+                    return reflector.getMutator(name);
+                }
+
+                @Override
+                public Iterable<Mutator> getMutators() {
+                    return reflector.getMutators();
+                }
+
+                @Override
+                public void preCache() throws Exception {}
+            };
+        }
+    }
+
+    @Test
+    public void testSlots() {
+        assertSlots(Reflect.METHODS);
+        assertSlots(Reflect.METHOD_HANDLES);
+        assertSlots(new Reflect(GeneratedReflectorFactory.class));
+        assertSlots(new Reflect(NameOnlyReflectorFactory.class));
+
+        // the default slot methods list the properties once per reflector
+        Reflector reflector = new NameOnlyReflectorFactory().createReflector(TestBean.class);
+        assertEquals(-1, reflector.getSlot("missing"));
+        NameOnlyReflectorFactory.LISTINGS.set(0);
+        assertEquals("name", reflector.getSlotName(reflector.getSlot("name")));
+        assertEquals(3, reflector.getSlotCount());
+        assertEquals(0, NameOnlyReflectorFactory.LISTINGS.get());
+    }
+
+    @Test
+    public void testPrimitiveMethods() {
+        for (Reflect reflect : Arrays.asList(Reflect.METHODS, Reflect.METHOD_HANDLES)) {
+            TestBean bean = new TestBean();
+            Reflector reflector = reflect.getReflector(TestBean.class);
+            ((IntMutator)reflector.getMutator("count")).mutateInt(bean, 11);
+            ((BooleanMutator)reflector.getMutator("active")).mutateBoolean(bean, true);
+            assertEquals(11, ((IntAccessor)reflector.getAccessor("count")).accessInt(bean));
+            assertTrue(((BooleanAccessor)reflector.getAccessor("active")).accessBoolean(bean));
+            assertFalse(reflector.getAccessor("name") instanceof IntAccessor);
+        }
+    }
+
+    @Test
+    public void testPrimitiveMethodsRejectNull() {
+        for (Reflect reflect : Arrays.asList(Reflect.METHODS, Reflect.METHOD_HANDLES)) {
+            try {
+                reflect.getReflector(TestBean.class).getMutator("count").mutate(new TestBean(), null);
+                fail("expected an IllegalArgumentException");
+            }
+            catch (IllegalArgumentException e) {
+                // as Method.invoke
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitiveFieldsRejectMismatches() {
+        for (Reflect reflect : Arrays.asList(Reflect.FIELDS, Reflect.VAR_HANDLES, new Reflect(VarHandleFieldReflectorFactory.Volatile.class))) {
+            Mutator count = reflect.getReflector(FieldBean.class).getMutator("count");
+            for (Object value : Arrays.asList(null, "1")) {
+                try {
+                    count.mutate(new FieldBean(), value);
+                    fail("expected an IllegalArgumentException");
+                }
+                catch (IllegalArgumentException e) {
+                    // as Field.set
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitiveFields() {
+        for (Reflect reflect : Arrays.asList(Reflect.FIELDS, Reflect.VAR_HANDLES)) {
+            FieldBean bean = new FieldBean();
+            Reflector reflector = reflect.getReflector(FieldBean.class);
+            ((IntMutator)reflector.getMutator("count")).mutateInt(bean, 1);
+            ((LongMutator)reflector.getMutator("total")).mutateLong(bean, 2L);
+            ((DoubleMutator)reflector.getMutator("ratio")).mutateDouble(bean, 3.0D);
+            assertEquals(1, ((IntAccessor)reflector.getAccessor("count")).accessInt(bean));
+            assertEquals(2L, ((LongAccessor)reflector.getAccessor("total")).accessLong(bean));
+            assertEquals(3.0D, ((DoubleAccessor)reflector.getAccessor("ratio")).accessDouble(bean), 0.0D);
+        }
+    }
+
+    private static class FieldBean {
+
+        private int count;
+        private long total;
+        private double ratio;
+        private String label;
+    }
+
+    private static void assertFieldAccessAndMutate(Reflect reflect) {
+        FieldBean bean = new FieldBean();
+        Reflector reflector = reflect.getReflector(FieldBean.class);
+        reflector.getMutator("count").mutate(bean, 3);
+        reflector.getMutator("label").mutate(bean, "y");
+        assertEquals(3, reflector.getAccessor("count").access(bean));
+        assertEquals("y", reflector.getAccessor("label").access(bean));
+        assertEquals(3, bean.count);
+        assertEquals("y", bean.label);
+    }
+
+    @Test
+    public void testFields() {
+        assertFieldAccessAndMutate(Reflect.FIELDS);
+    }
+
+    @Test
+    public void testVarHandles() {
+        assertFieldAccessAndMutate(Reflect.VAR_HANDLES);
+        for (Class<? extends ReflectorFactory> factoryClass : Arrays.asList(VarHandleFieldReflectorFactory.Opaque.class,
+                VarHandleFieldReflectorFactory.AcquireRelease.class, VarHandleFieldReflectorFactory.Volatile.class)) {
+            assertFieldAccessAndMutate(new Reflect(factoryClass));
+        }
+    }
+
+    @Test
+    public void testFieldSlots() {
+        Reflector reflector = Reflect.FIELDS.getReflector(FieldBean.class);
+        assertEquals(Arrays.asList("count", "total", "ratio", "label"), Arrays.asList(reflector.getSlotName(0), reflector.getSlotName(1),
+                reflector.getSlotName(2), reflector.getSlotName(3)));
+    }
+
+    @Test
+    public void testVarHandlesTyped() {
+        FieldBean bean = new FieldBean();
+        Reflector reflector = new Reflect(VarHandleFieldReflectorFactory.AcquireRelease.class).getReflector(FieldBean.class);
+        VarHandleReflector count = (VarHandleReflector)reflector.getAccessor("count");
+        VarHandleReflector total = (VarHandleReflector)reflector.getAccessor("total");
+        VarHandleReflector ratio = (VarHandleReflector)reflector.getAccessor("ratio");
+        assertEquals(FieldAccessMode.ACQUIRE_RELEASE, count.getAccessMode());
+        count.setInt(bean, 5);
+        total.setLong(bean, 6L);
+        ratio.setDouble(bean, 0.5D);
+        assertEquals(5, count.getInt(bean));
+        assertEquals(6L, total.getLong(bean));
+        assertEquals(0.5D, ratio.getDouble(bean), 0.0D);
+        assertEquals(5, bean.count);
+        assertEquals(6L, bean.total);
+        assertEquals(0.5D, bean.ratio, 0.0D);
+    }
+
+    public static class CountingReflectorFactory extends MethodReflectorFactory {
+
+        static final Map<Class<?>, AtomicInteger> COUNTS = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+
+        @Override
+        public Reflector createReflector(Class<?> type) {
+            COUNTS.computeIfAbsent(type, new Function<Class<?>, AtomicInteger>() {
+                @Override
+                public AtomicInteger apply(Class<?> t) {
+                    return new AtomicInteger();
+                }
+            }).incrementAndGet();
+            return super.createReflector(type);
+        }
+    }
+
+    @Test
+    public void testSingleFlightReflection() throws Exception {
+        assertSingleFlight(new DefaultReflectorCache());
+    }
+
+    @Test
+    public void testSingleFlightClassValueReflection() throws Exception {
+        assertSingleFlight(new ClassValueReflectorCache());
+    }
+
+    @Test
+    public void testClassValueCache() {
+        Reflect reflect = new Reflect(MethodReflectorFactory.class, new ClassValueReflectorCache());
+        Reflector reflector = reflect.getReflector(TestBean.class);
+        assertSame(reflector, reflect.getReflector(TestBean.class));
+        reflect.unCache(TestBean.class);
+        Reflector unCached = reflect.getReflector(TestBean.class);
+        assertFalse(reflector == unCached);
+        assertSame(unCached, reflect.getReflector(TestBean.class));
+        reflect.clearCache();
+        assertFalse(unCached == reflect.getReflector(TestBean.class));
+        assertAccessAndMutate(reflect);
+    }
+
+    @Test
+    public void testBoundedCache() {
+        BoundedReflectorCache cache = new BoundedReflectorCache(2);
+        Reflect reflect = new Reflect(MethodReflectorFactory.class, cache);
+        Reflector bean = reflect.getReflector(TestBean.class);
+        reflect.getReflector(PrivateBean.class);
+        assertSame(bean, reflect.getReflector(TestBean.class));
+        // evicts the least recently used
+        reflect.getReflector(FieldBean.class);
+        assertEquals(2, cache.size());
+        assertSame(bean, reflect.getReflector(TestBean.class));
+        ReflectStats stats = reflect.getStats();
+        assertEquals(3, stats.getMissCount());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertTrue(stats.getTotalBuildTime() > 0L);
+        reflect.getReflector(PrivateBean.class);
+        assertEquals(4, reflect.getStats().getMissCount());
+        assertEquals(2, reflect.getStats().getEvictionCount());
+        assertAccessAndMutate(reflect);
+    }
+
+    @Test
+    public void testBoundedCacheContention() throws Exception {
+        assertSingleFlight(new BoundedReflectorCache(16));
+
+        // hits and evictions racing on a full cache still give each thread the reflector it asked for
+        final BoundedReflectorCache cache = new BoundedReflectorCache(2);
+        final Reflect reflect = new Reflect(MethodReflectorFactory.class, cache);
+        final List<Class<?>> types = Arrays.<Class<?>> asList(TestBean.class, TestBean.class, PrivateBean.class, FieldBean.class);
+        final CountDownLatch start = new CountDownLatch(1);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                final int offset = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < 1000; j++) {
+                            Class<?> type = types.get((offset + j) % types.size());
+                            assertEquals(Reflect.METHODS.getReflector(type).getSlotCount(), reflect.getReflector(type).getSlotCount());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 2);
+        assertTrue(cache.getEvictionCount() > 0L);
+    }
+
+    @Test
+    public void testBoundedSoftCache() throws Exception {
+        Reflect reflect = new Reflect(MethodReflectorFactory.class, new BoundedReflectorCache(16, true));
+        Reflector reflector = reflect.getReflector(TestBean.class);
+        assertSame(reflector, reflect.getReflector(TestBean.class));
+        assertSingleFlight(new BoundedReflectorCache(16, true));
+    }
+
+    @Test
+    public void testPreCacheAll() {
+        CountingReflectorFactory.COUNTS.clear();
+        Reflect reflect = new Reflect(CountingReflectorFactory.class);
+        reflect.setReflectorFactoryClass(Object.class, BrokenReflectorFactory.class);
+        List<Class<?>> types = Arrays.<Class<?>> asList(TestBean.class, PrivateBean.class, FieldBean.class, TestBean.class, Object.class);
+        PreCacheReport report = reflect.preCacheAll(types, true, ForkJoinPool.commonPool());
+        assertEquals(4, report.getTypeCount());
+        assertFalse(report.isSuccessful());
+        assertEquals(Collections.singleton(Object.class), report.getFailures().keySet());
+        assertTrue(report.getTimes().containsKey(TestBean.class));
+        for (Class<?> type : Arrays.<Class<?>> asList(TestBean.class, PrivateBean.class, FieldBean.class)) {
+            assertEquals(1, CountingReflectorFactory.COUNTS.get(type).get());
+        }
+        // three built, one failed
+        assertEquals(4, reflect.getStats().getMissCount());
+    }
+
+    @Test
+    public void testPreCachePackage() {
+        PreCacheReport report = new Reflect().preCachePackage("org.ubercraft.sucre.reflect", ReflectTest.class.getClassLoader(), true, false);
+        assertTrue(report.getTimes().containsKey(TestBean.class));
+        assertTrue(report.getTimes().containsKey(Reflect.class));
+        assertTrue(report.getTimes().containsKey(org.ubercraft.sucre.reflect.processor.ReflectorProcessor.class));
+    }
+
+    @Test
+    public void testFindClassesInDirectoryWithPlus() throws Exception {
+        Path root = Files.createTempDirectory("sucre+classes");
+        Path dir = Files.createDirectories(root.resolve("org/ubercraft/sucre/common"));
+        Path file = dir.resolve("ExceptionUtil.class");
+        InputStream in = ExceptionUtil.class.getResourceAsStream("ExceptionUtil.class");
+        try {
+            Files.copy(in, file);
+        }
+        finally {
+            in.close();
+        }
+        URLClassLoader loader = new URLClassLoader(new URL[] { root.toUri().toURL() }, ClassLoader.getPlatformClassLoader());
+        try {
+            List<Class<?>> classes = ReflectionUtil.findClasses("org.ubercraft.sucre.common", loader, false);
+            assertEquals(1, classes.size());
+            assertEquals(ExceptionUtil.class.getName(), classes.get(0).getName());
+            assertSame(loader, classes.get(0).getClassLoader());
+        }
+        finally {
+            loader.close();
+            Files.delete(file);
+            for (File f = dir.toFile(); !f.equals(root.toFile().getParentFile()); f = f.getParentFile()) {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testRecursiveReflection() {
+        for (ReflectorCache cache : Arrays.<ReflectorCache> asList(new DefaultReflectorCache(), new BoundedReflectorCache(2))) {
+            Reflect reflect = new Reflect(RecursiveReflectorFactory.class, cache);
+            RecursiveReflectorFactory.REFLECT = reflect;
+            // a factory may get other reflectors while building one
+            assertTrue(reflect.getReflector(Node.class).getAccessor("name") != null);
+            assertEquals(2, reflect.getStats().getMissCount());
+            reflect.getReflector(TestBean.class);
+            assertEquals(2, reflect.getStats().getMissCount());
+            // but not the one it's building
+            try {
+                reflect.getReflector(FieldBean.class);
+                fail("recursive reflector creation");
+            }
+            catch (ReflectException e) {
+                assertTrue(e.getMessage().startsWith("recursive reflector creation"));
+            }
+            // and a failure isn't cached
+            RecursiveReflectorFactory.REFLECT = null;
+            assertTrue(reflect.getReflector(FieldBean.class) != null);
+            assertEquals(4, reflect.getStats().getMissCount());
+        }
+    }
+
+    @Test
+    public void testSetReflectorFactoryClassUnCaches() {
+        Reflect reflect = new Reflect();
+        assertTrue(reflect.getReflector(TestBean.class).getAccessor("count") instanceof MethodReflector);
+        reflect.setReflectorFactoryClass(TestBean.class, FieldReflectorFactory.class);
+        assertTrue(reflect.getReflector(TestBean.class).getAccessor("count") instanceof FieldReflector);
+        reflect.setReflectorFactoryClass(TestBean.class, null);
+        assertTrue(reflect.getReflector(TestBean.class).getAccessor("count") instanceof MethodReflector);
+    }
+
+    public static class RecursiveReflectorFactory extends MethodReflectorFactory {
+
+        static volatile Reflect REFLECT;
+
+        @Override
+        public Reflector createReflector(Class<?> type) {
+            Reflect reflect = REFLECT;
+            if (reflect != null) {
+                if (type == Node.class) {
+                    reflect.getReflector(TestBean.class);
+                }
+                else if (type == FieldBean.class) {
+                    reflect.getReflector(FieldBean.class);
+                }
+            }
+            return super.createReflector(type);
+        }
+    }
+
+    public static class BrokenReflectorFactory implements ReflectorFactory {
+
+        @Override
+        public Reflector createReflector(Class<?> type) {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    public static class Node {
+
+        private final String name;
+        private Node child;
+        private List<Object> children = new ArrayList<Object>();
+        private int[] numbers = { 1, 2 };
+
+        public Node(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Node getChild() {
+            return child;
+        }
+
+        public List<Object> getChildren() {
+            return children;
+        }
+
+        public int[] getNumbers() {
+            return numbers;
+        }
+
+        public Node[] getChildArray() {
+            return children.toArray(new Node[children.size()]);
+        }
+    }
+
+    public static class SubNode extends Node {
+
+        public SubNode(String name) {
+            super(name);
+        }
+
+        public String getExtra() {
+            return "extra";
+        }
+    }
+
+    @Test
+    public void testPropertyPaths() {
+        Reflect reflect = new Reflect();
+        Node root = new Node("root");
+        root.child = new Node("child");
+        root.child.children.add(new Node("a"));
+        root.child.children.add(new SubNode("b"));
+        PropertyPath path = reflect.getPropertyPath(Node.class, "child.children[1].name");
+        assertSame(path, reflect.getPropertyPath(Node.class, "child.children[1].name"));
+        assertEquals("b", path.get(root));
+        assertEquals("extra", reflect.getPropertyPath(Node.class, "child.children[1].extra").get(root));
+        assertEquals("a", reflect.getPropertyPath(Node.class, "child.childArray[0].name").get(root));
+        assertSame(String.class, reflect.getPropertyPath(Node.class, "child.childArray[0].name").getType());
+        assertEquals(2, reflect.getPropertyPath(Node.class, "numbers[1]").get(root));
+        // short-circuits
+        assertNull(reflect.getPropertyPath(Node.class, "child.children[2].name").get(root));
+        assertNull(reflect.getPropertyPath(Node.class, "child.child.name").get(root));
+        assertNull(path.get(null));
+        // runtime resolution follows the element type
+        root.child.children.set(1, new Node("c"));
+        assertEquals("c", path.get(root));
+        reflect.clearCache();
+        assertFalse(path == reflect.getPropertyPath(Node.class, "child.children[1].name"));
+        // uncaching a type recompiles the paths that pass through it, but not others
+        PropertyPath childName = reflect.getPropertyPath(SubNode.class, "child.name");
+        PropertyPath numbers = reflect.getPropertyPath(SubNode.class, "numbers[1]");
+        reflect.unCache(Node.class);
+        assertFalse(childName == reflect.getPropertyPath(SubNode.class, "child.name"));
+        assertSame(numbers, reflect.getPropertyPath(SubNode.class, "numbers[1]"));
+        SubNode subRoot = new SubNode("sub");
+        ((Node)subRoot).child = root.child;
+        assertEquals("child", reflect.getPropertyPath(SubNode.class, "child.name").get(subRoot));
+        for (String bad : Arrays.asList("", ".a", "a.", "a..b", "a[", "a[x]", "a[-1]", "a[0]b")) {
+            try {
+                reflect.getPropertyPath(Node.class, bad);
+                assertTrue(bad, false);
+            }
+            catch (ReflectException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertSingleFlight(ReflectorCache cache) throws Exception {
+        CountingReflectorFactory.COUNTS.clear();
+        final Reflect reflect = new Reflect(CountingReflectorFactory.class, cache);
+        final List<Class<?>> types = Arrays.<Class<?>> asList(TestBean.class, PrivateBean.class, FieldBean.class);
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final CountDownLatch start = new CountDownLatch(1);
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (Class<?> type : types) {
+                            Reflector reflector = reflect.getReflector(type);
+                            synchronized (seen) {
+                                seen.add(reflector);
+                                for (Accessor accessor : reflector.getAccessors()) {
+                                    seen.add(accessor);
+                                    seen.add(accessor.getPairedMutator());
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        for (Class<?> type : types) {
+            assertEquals(1, CountingReflectorFactory.COUNTS.get(type).get());
+        }
+        // one reflector per type, and a single instance of each accessor and mutator (or no mutator)
+        int expected = types.size();
+        for (Class<?> type : types) {
+            for (Accessor accessor : reflect.getReflector(type).getAccessors()) {
+                expected += accessor.isPaired() ? 2 : 1;
+            }
+        }
+        seen.remove(null);
+        assertEquals(expected, seen.size());
+    }
+}